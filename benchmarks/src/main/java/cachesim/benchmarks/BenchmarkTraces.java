@@ -0,0 +1,99 @@
+package cachesim.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The traces used by the benchmarks, so that every run reads exactly the same input (without network access).
+ *
+ * "synthetic" is generated from a fixed seed, "test" is the bundled testmsi_N.data set and "bodytrack" splits the bundled
+ * bodytrack_2.data into four per-core traces. The bundled traces are looked for in the directory given by the
+ * `traces.dir` system property, or else the current directory.
+ *
+ * The simulator lowercases the whole path of a trace, so every trace is written to target/benchmark-traces under the
+ * current directory, and passed by that relative path (which has no capitals, wherever the current directory is).
+ */
+public class BenchmarkTraces {
+
+    public static final int CORES = 4;
+    private static final long SEED = 4223;
+    private static final Path DIRECTORY = Paths.get("target", "benchmark-traces");
+
+    /**
+     * @param name synthetic, test or bodytrack
+     * @param lines the number of lines per core of a synthetic trace
+     * @return the trace name to pass to Instruction/DecodedTrace
+     */
+    public static String get(String name, int lines) {
+        try {
+            switch (name) {
+                case "synthetic":
+                    return synthetic(lines);
+                case "test":
+                    return test();
+                case "bodytrack":
+                    return bodytrack();
+                default:
+                    throw new IllegalArgumentException("Unknown trace " + name);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads and stores (about a third of them stores) to a region shared by every core and a private region per core,
+     * with NOP runs of 1 to 64 cycles in between.
+     */
+    private static String synthetic(int lines) throws IOException {
+        Files.createDirectories(DIRECTORY);
+        for (int core = 0; core < CORES; core++) {
+            Random random = new Random(SEED + core);
+            File file = DIRECTORY.resolve("synthetic_" + core + ".data").toFile();
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+                for (int i = 0; i < lines; i++) {
+                    int type = random.nextInt(4);
+                    if (type == 3) {
+                        writer.write("2 0x" + Integer.toHexString(1 + random.nextInt(64)));
+                    } else {
+                        int base = random.nextInt(4) == 0 ? 0x10000000 : 0x20000000 + (core << 20);
+                        int address = base + (random.nextInt(1 << 16) << 2);
+                        writer.write((type == 2 ? 1 : random.nextInt(2)) + " 0x" + Integer.toHexString(address));
+                    }
+                    writer.newLine();
+                }
+            }
+        }
+        return DIRECTORY.resolve("synthetic").toString();
+    }
+
+    private static String test() throws IOException {
+        Files.createDirectories(DIRECTORY);
+        for (int core = 0; core < CORES; core++) {
+            String file = "testmsi_" + core + ".data";
+            Files.copy(Paths.get(System.getProperty("traces.dir", "."), file), DIRECTORY.resolve(file),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        return DIRECTORY.resolve("testmsi").toString();
+    }
+
+    private static String bodytrack() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(System.getProperty("traces.dir", "."), "bodytrack_2.data"));
+        Files.createDirectories(DIRECTORY);
+        int perCore = lines.size() / CORES;
+        for (int core = 0; core < CORES; core++) {
+            Files.write(DIRECTORY.resolve("bodytrack_" + core + ".data"),
+                    lines.subList(core * perCore, (core + 1) * perCore));
+        }
+        return DIRECTORY.resolve("bodytrack").toString();
+    }
+}
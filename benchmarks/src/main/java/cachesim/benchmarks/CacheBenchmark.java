@@ -0,0 +1,114 @@
+package cachesim.benchmarks;
+
+import cachesim.Bus;
+import cachesim.Cache;
+import cachesim.Protocol;
+import cachesim.Simulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single Cache.readCache()/writeCache() across cache sizes and associativities, for accesses that (mostly) hit
+ * and for accesses to a working set much larger than the cache, where every miss is run through the bus until the
+ * cache has the block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+    private static final int ADDRESSES = 1 << 12;
+
+    @Param({"1024", "4096", "65536", "1048576"})
+    public int cacheSize;
+
+    @Param({"1", "2", "8", "32"})
+    public int associativity;
+
+    @Param({"32"})
+    public int blockSize;
+
+    @Param({"MESI"})
+    public Protocol protocol;
+
+    private Bus bus;
+    private Cache cache;
+    private long cycle;
+    private int[] residentAddresses;
+    private int[] thrashingAddresses;
+    private int next;
+
+    @Setup
+    public void setup() {
+        bus = new Bus(protocol, blockSize / 4, 1);
+        cache = new Cache(cacheSize, associativity, blockSize, protocol, bus, 0, Simulation.QUIET);
+        bus.setCaches(new Cache[] {cache}, 0);
+        cycle = 0;
+        next = 0;
+
+        Random random = new Random(4223);
+        int blocks = cacheSize / blockSize;
+        residentAddresses = new int[ADDRESSES];
+        thrashingAddresses = new int[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            // half of the blocks the cache can hold, and 64 times as many as it can hold
+            residentAddresses[i] = random.nextInt(Math.max(blocks / 2, 1)) * blockSize;
+            thrashingAddresses[i] = random.nextInt(blocks * 64) * blockSize;
+        }
+        for (int address : residentAddresses) {
+            read(address);
+        }
+    }
+
+    @Benchmark
+    public void readResident() {
+        read(residentAddresses[next++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public void writeResident() {
+        write(residentAddresses[next++ & (ADDRESSES - 1)]);
+    }
+
+    @Benchmark
+    public void readThrashing() {
+        read(thrashingAddresses[next++ & (ADDRESSES - 1)]);
+    }
+
+    private void read(int address) {
+        cache.readCache(address);
+        waitForBus();
+    }
+
+    private void write(int address) {
+        cache.writeCache(address);
+        waitForBus();
+    }
+
+    /**
+     * Run the bus until the cache is no longer stalled (or has nothing left to do there)
+     */
+    private void waitForBus() {
+        while (cache.isCacheStalled() || bus.getIdleCycles(cycle) == 0) {
+            bus.deliverSnoop(0);
+            cache.busSnoop(cycle);
+            bus.runBusTransactions(cycle);
+            cycle += 1;
+        }
+    }
+}
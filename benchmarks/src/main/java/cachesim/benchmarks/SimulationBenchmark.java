@@ -0,0 +1,82 @@
+package cachesim.benchmarks;
+
+import cachesim.DecodedTrace;
+import cachesim.Instruction;
+import cachesim.Protocol;
+import cachesim.Simulation;
+import cachesim.SimulationResult;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end simulation throughput, reported as simulated `cycles` per second (and whole runs per second).
+ * The trace is decoded once per trial, so this measures the simulation and not the parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class SimulationBenchmark {
+
+    @Param({"MSI", "MESI", "DRAGON"})
+    public Protocol protocol;
+
+    @Param({"synthetic", "test", "bodytrack"})
+    public String trace;
+
+    @Param({"true", "false"})
+    public boolean eventDriven;
+
+    @Param({"4096"})
+    public int cacheSize;
+
+    @Param({"2"})
+    public int associativity;
+
+    @Param({"32"})
+    public int blockSize;
+
+    private DecodedTrace decoded;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long cycles;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            cycles = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        decoded = new DecodedTrace(BenchmarkTraces.get(trace, 50000), BenchmarkTraces.CORES, DecodedTrace.Storage.HEAP);
+    }
+
+    @Benchmark
+    public SimulationResult simulate(Counters counters) {
+        Simulation simulation = new Simulation(protocol, new Instruction(decoded), cacheSize, associativity, blockSize,
+                eventDriven, Simulation.QUIET);
+        simulation.runProcessors();
+        SimulationResult result = simulation.calculateResults();
+        counters.cycles += result.cycles;
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+package cachesim.benchmarks;
+
+import cachesim.Bus;
+import cachesim.Cache;
+import cachesim.Protocol;
+import cachesim.Simulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one bus transaction (Bus.runBusTransactions(), delivering it to the caches that hold its block, plus every
+ * cache's Cache.busSnoop() each cycle, until it is done) as the number of caches on the bus grows. Each cache takes
+ * turns missing on blocks that the others may hold.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnoopBenchmark {
+
+    private static final int ADDRESSES = 1 << 12;
+
+    @Param({"4", "16", "32"})
+    public int cores;
+
+    @Param({"MSI", "MESI", "DRAGON"})
+    public Protocol protocol;
+
+    private Bus bus;
+    private Cache[] caches;
+    private int[] addresses;
+    private long cycle;
+    private int next;
+
+    @Setup
+    public void setup() {
+        bus = new Bus(protocol, 8, cores);
+        caches = new Cache[cores];
+        for (int i = 0; i < cores; i++) {
+            caches[i] = new Cache(4096, 2, 32, protocol, bus, i, Simulation.QUIET);
+        }
+        bus.setCaches(caches, 0);
+        Random random = new Random(4223);
+        addresses = new int[ADDRESSES];
+        for (int i = 0; i < ADDRESSES; i++) {
+            addresses[i] = random.nextInt(1 << 10) * 32;
+        }
+        cycle = 0;
+        next = 0;
+    }
+
+    @Benchmark
+    public void transaction() {
+        Cache cache = caches[next % cores];
+        int address = addresses[next++ & (ADDRESSES - 1)];
+        if ((next & 3) == 0) {
+            cache.writeCache(address);
+        } else {
+            cache.readCache(address);
+        }
+        // until the bus has nothing left to do, as in Simulation.runProcessors() when every core is waiting
+        do {
+            for (int i = 0; i < cores; i++) {
+                bus.deliverSnoop(i);
+                caches[i].busSnoop(cycle);
+            }
+            bus.runBusTransactions(cycle);
+            cycle += 1;
+        } while (cache.isCacheStalled() || bus.getIdleCycles(cycle) == 0);
+    }
+}
@@ -0,0 +1,102 @@
+package cachesim.benchmarks;
+
+import cachesim.DecodedTrace;
+import cachesim.Instruction;
+import cachesim.TraceReader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trace decoding throughput, reported as `lines` (trace lines) or `instructions` (including every single NOP) per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraceBenchmark {
+
+    @Param({"synthetic", "bodytrack"})
+    public String trace;
+
+    private String traceName;
+    private DecodedTrace decoded;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long lines;
+        public long instructions;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+            instructions = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        traceName = BenchmarkTraces.get(trace, 1000000);
+        decoded = new DecodedTrace(traceName, BenchmarkTraces.CORES, DecodedTrace.Storage.HEAP);
+    }
+
+    /**
+     * Parse the text of one core's trace from the memory-mapped file
+     */
+    @Benchmark
+    public int textReader(Counters counters) throws IOException {
+        TraceReader reader = new TraceReader(Instruction.getTraceFileName(traceName, 0));
+        int checksum = 0;
+        while (reader.readLine()) {
+            checksum += reader.getAddress();
+            counters.lines += 1;
+        }
+        reader.close();
+        return checksum;
+    }
+
+    /**
+     * Read one core's already decoded trace
+     */
+    @Benchmark
+    public int decodedCursor(Counters counters) {
+        DecodedTrace.Cursor cursor = decoded.getCursor(0);
+        int checksum = 0;
+        while (cursor.readLine()) {
+            checksum += cursor.getAddress();
+            counters.lines += 1;
+        }
+        return checksum;
+    }
+
+    /**
+     * Fetch every instruction of one core through Instruction.getInstruction(), as the processors do
+     */
+    @Benchmark
+    public long instructionFetch(Counters counters) {
+        Instruction instruction = new Instruction(decoded);
+        long checksum = 0;
+        long fetched;
+        while ((fetched = instruction.getInstruction(0)) != Instruction.END) {
+            checksum += fetched;
+            counters.instructions += 1;
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,227 @@
+package cachesim;
+
+/**
+ * Reads a trace in the compact binary format written by BinaryTraceWriter (`name_core.trace`).
+ *
+ * The file starts with a fixed header:
+ *   magic    4 bytes  "CTRC"
+ *   version  1 byte   1
+ *   core     4 bytes  the core the trace is for
+ *   lines    8 bytes  the number of records that follow
+ *   total    8 bytes  the number of instructions they make up (every single NOP counted)
+ *
+ * followed by one varint (7 bits per byte, least significant first) per record, whose low 2 bits are the op code:
+ *   0 LDR, 1 STR   the rest is the zigzag encoded difference from the previous LDR/STR address (starting from 0)
+ *   2 NOP          the rest is a run of NOPs, in the same form as the address of a `2 N` line (N + 1 NOPs)
+ * Consecutive NOP lines are merged into one run, which takes exactly as many cycles.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryTraceReader implements TraceSource {
+
+    public static final byte[] MAGIC = {'C', 'T', 'R', 'C'};
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 25;
+
+    public static final int OP_LOAD = 0;
+    public static final int OP_STORE = 1;
+    public static final int OP_NOP = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private String fileName;
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private boolean isEndOfFile;
+
+    private int core;
+    private long lines;
+    private long instructions;
+    private long linesRead;
+
+    // result of the last readLine()
+    private int type;
+    private int address;
+    private int previousAddress;
+
+    public BinaryTraceReader(String fileName) throws IOException {
+        this(fileName, FileChannel.open(Paths.get(fileName), StandardOpenOption.READ));
+    }
+
+    /**
+     * @param fileName the name of the trace, for error messages
+     * @param channel where to read the trace from, from its first byte on
+     */
+    public BinaryTraceReader(String fileName, ReadableByteChannel channel) throws IOException {
+        this.fileName = fileName;
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+        isEndOfFile = false;
+
+        fill(HEADER_SIZE);
+        if (buffer.remaining() < HEADER_SIZE || !hasMagic(buffer) || buffer.get(MAGIC.length) != VERSION) {
+            throw new IOException(fileName + " is not a binary trace (version " + VERSION + ")");
+        }
+        buffer.position(MAGIC.length + 1);
+        core = buffer.getInt();
+        lines = buffer.getLong();
+        instructions = buffer.getLong();
+        linesRead = 0;
+        previousAddress = 0;
+    }
+
+    /**
+     * @return true if the buffer starts with the magic of a binary trace (its position is left as it was)
+     */
+    public static boolean hasMagic(ByteBuffer start) {
+        if (start.remaining() < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (start.get(start.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean readLine() {
+        if (linesRead >= lines) {
+            return false;
+        }
+        if (buffer.remaining() < MAX_VARINT_BYTES) {
+            fill(MAX_VARINT_BYTES);
+        }
+        long record = readVarint();
+        linesRead += 1;
+        int op = (int)(record & 3);
+        int value = (int)(record >>> 2);
+        if (op == OP_NOP) {
+            type = 2;
+            address = value;
+        } else {
+            type = op;
+            address = previousAddress + ((value >>> 1) ^ -(value & 1));
+            previousAddress = address;
+        }
+        return true;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the core the trace was written for
+     */
+    public int getCore() {
+        return core;
+    }
+
+    /**
+     * @return the number of instructions in the whole trace, counting every single NOP
+     */
+    public long getInstructionCount() {
+        return instructions;
+    }
+
+    @Override
+    public long countLines() {
+        return lines - linesRead;
+    }
+
+    @Override
+    public double getProgress() {
+        return lines == 0 ? 1 : (double)linesRead / lines;
+    }
+
+    /**
+     * @return the offset of the next record, the number of records read and the last address (the next one is relative
+     * to it), when read from a file
+     */
+    @Override
+    public long[] getPosition() {
+        if (!(channel instanceof FileChannel)) {
+            return null;
+        }
+        try {
+            return new long[] {((FileChannel) channel).position() - buffer.remaining(), linesRead, previousAddress};
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean seek(long[] position) throws IOException {
+        if (!(channel instanceof FileChannel) || position.length != 3) {
+            return false;
+        }
+        FileChannel file = (FileChannel) channel;
+        if (position[0] < HEADER_SIZE || position[0] > file.size() || position[1] > lines) {
+            throw new IOException(fileName + " is shorter than when the position was taken");
+        }
+        file.position(position[0]);
+        buffer.clear();
+        buffer.flip();
+        isEndOfFile = false;
+        linesRead = position[1];
+        previousAddress = (int)position[2];
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (!buffer.hasRemaining() || shift >= 7 * MAX_VARINT_BYTES) {
+                throw new UncheckedIOException(new IOException("Malformed record " + (linesRead + 1) + " in " + fileName));
+            }
+            byte b = buffer.get();
+            value |= (long)(b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Read from the channel until there are at least `bytes` bytes in the buffer, or the file ends
+     */
+    private void fill(int bytes) {
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes && !isEndOfFile) {
+                if (channel.read(buffer) < 0) {
+                    isEndOfFile = true;
+                }
+            }
+            // read ahead as far as the buffer goes while we are at it
+            if (!isEndOfFile && buffer.hasRemaining() && channel.read(buffer) < 0) {
+                isEndOfFile = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,113 @@
+package cachesim;
+
+/**
+ * Writes a trace in the compact binary format read by BinaryTraceReader, one line at a time.
+ *
+ * The header is written with the counts left at zero and filled in on close(), so nothing has to be counted in advance.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class BinaryTraceWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private int core;
+    private long lines;
+    private long instructions;
+    private int previousAddress;
+    // NOPs waiting to be merged with the next NOP line, in the form of a `2 N` address (-1 if there are none)
+    private long pendingNops;
+
+    public BinaryTraceWriter(String fileName, int core) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.core = core;
+        lines = 0;
+        instructions = 0;
+        previousAddress = 0;
+        pendingNops = -1;
+        writeHeader();
+    }
+
+    /**
+     * @param type LDR - 0, STR - 1, NOP - 2
+     * @param address the address, or for a NOP the number of NOPs as in the text traces (N + 1 NOPs for `2 N`)
+     */
+    public void write(int type, int address) throws IOException {
+        if (type == 2) {
+            // like Instruction, anything below `2 0` is a single NOP
+            long nops = Math.max(address, 0) + 1;
+            if (pendingNops >= 0 && pendingNops + nops <= Integer.MAX_VALUE) {
+                pendingNops += nops;
+            } else {
+                flushNops();
+                pendingNops = nops - 1;
+            }
+            instructions += nops;
+            return;
+        }
+        if (type != 0 && type != 1) {
+            throw new IOException("Unknown instruction type " + type + " on line " + (lines + 1));
+        }
+        flushNops();
+        int delta = address - previousAddress;
+        previousAddress = address;
+        writeRecord(((long)((delta << 1) ^ (delta >> 31)) & 0xFFFFFFFFL) << 2 | type);
+        instructions += 1;
+    }
+
+    /**
+     * Write what is left and fill in the header
+     */
+    public void close() throws IOException {
+        flushNops();
+        flushBuffer();
+        channel.position(0);
+        writeHeader();
+        channel.close();
+    }
+
+    private void flushNops() throws IOException {
+        if (pendingNops >= 0) {
+            writeRecord(pendingNops << 2 | BinaryTraceReader.OP_NOP);
+            pendingNops = -1;
+        }
+    }
+
+    private void writeRecord(long record) throws IOException {
+        if (buffer.remaining() < 5) {
+            flushBuffer();
+        }
+        while ((record & ~0x7fL) != 0) {
+            buffer.put((byte)((record & 0x7f) | 0x80));
+            record >>>= 7;
+        }
+        buffer.put((byte)record);
+        lines += 1;
+    }
+
+    private void writeHeader() throws IOException {
+        buffer.put(BinaryTraceReader.MAGIC);
+        buffer.put(BinaryTraceReader.VERSION);
+        buffer.putInt(core);
+        buffer.putLong(lines);
+        buffer.putLong(instructions);
+        flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -1,3 +1,5 @@
+package cachesim;
+
 /**
  * Stuff to do on the bus (~the wheels on the bus go round and round~).
  */
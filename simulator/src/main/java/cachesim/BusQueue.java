@@ -0,0 +1,275 @@
+package cachesim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The operations waiting to go on the bus, and the arbitration that picks which one goes next.
+ *
+ * It is a ring buffer used as a deque, with the newest operations at the front and the next one to go at the back, so
+ * adding and taking an operation does not allocate unless it has to grow. For the policies that pick by core, the
+ * queue is searched from the back, and the operation picked is taken out of the middle.
+ *
+ * Under ROUND_ROBIN and FIXED_PRIORITY, a request for a block that the same core already has waiting (a write to a
+ * shared block asks for it exclusively on every write until the first request gets the bus) is merged into the waiting
+ * one. These grant a core one operation per turn, so the repeated requests would otherwise pile up faster than they go.
+ * The other policies keep every request, as the protocols have always had them.
+ *
+ * For every core it counts the operations granted the bus, and how many cycles each of them waited for it.
+ */
+public class BusQueue {
+
+    public enum Arbitration {
+        // flushes go before everything else (the newest one first), the rest in the order they came in
+        FLUSH_FIRST,
+        // everything in the order it came in
+        FCFS,
+        // the oldest operation of the first core after the one granted last that has any
+        ROUND_ROBIN,
+        // the oldest operation of the lowest numbered core that has any
+        FIXED_PRIORITY;
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Arbitration arbitration;
+    private BusOperation[] operations;
+    // the cycle each operation was added in
+    private long[] addedCycles;
+    // index of the front
+    private int head;
+    private int size;
+    private int lastGrantedCore;
+
+    private long[] grants;
+    private LatencyHistogram[] waitCycles;
+
+    public BusQueue(Arbitration arbitration, int cores) {
+        this.arbitration = arbitration;
+        operations = new BusOperation[INITIAL_CAPACITY];
+        addedCycles = new long[INITIAL_CAPACITY];
+        head = 0;
+        size = 0;
+        lastGrantedCore = cores - 1;
+        grants = new long[cores];
+        waitCycles = new LatencyHistogram[cores];
+        for (int i = 0; i < cores; i++) {
+            waitCycles[i] = new LatencyHistogram();
+        }
+    }
+
+    public Arbitration getArbitration() {
+        return arbitration;
+    }
+
+    /**
+     * Queue an operation, unless it is a request its core already has waiting and the arbitration merges them
+     * @param blockShift log2 of the block size, to tell which requests are for the same block
+     */
+    public void add(BusOperation operation, long cycle, int blockShift) {
+        if (isWaiting(operation, blockShift)) {
+            return;
+        }
+        if (size == operations.length) {
+            resize();
+        }
+        if (arbitration == Arbitration.FLUSH_FIRST && operation.transaction == Transaction.BUS_FLUSH) {
+            int slot = (head + size) & (operations.length - 1);
+            operations[slot] = operation;
+            addedCycles[slot] = cycle;
+        } else {
+            head = (head - 1) & (operations.length - 1);
+            operations[head] = operation;
+            addedCycles[head] = cycle;
+        }
+        size += 1;
+    }
+
+    /**
+     * @return true if the arbitration merges requests and the same core already has the same request for the same
+     * block queued
+     */
+    private boolean isWaiting(BusOperation operation, int blockShift) {
+        if (arbitration != Arbitration.ROUND_ROBIN && arbitration != Arbitration.FIXED_PRIORITY) {
+            return false;
+        }
+        if (operation.transaction != Transaction.BUS_READ && operation.transaction != Transaction.BUS_READ_EXCLUSIVE) {
+            return false;
+        }
+        int block = operation.address >>> blockShift;
+        for (int i = 0; i < size; i++) {
+            BusOperation waiting = operations[(head + i) & (operations.length - 1)];
+            if (waiting.cacheCore == operation.cacheCore && waiting.transaction == operation.transaction
+                    && waiting.address >>> blockShift == block) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Take the next operation off the queue, and count it as granted the bus in `cycle`
+     * @return the operation, or null if there are none
+     */
+    public BusOperation grant(long cycle) {
+        return grant(cycle, null, 0, 0);
+    }
+
+    /**
+     * Take the next operation off the queue that is not for one of the blocked blocks (a flush never is), and count it
+     * as granted the bus in `cycle`
+     * @param blockedBlocks the blocks (address >>> blockShift) that have to wait, in the first blockedCount entries
+     * @return the operation, or null if there are none that can go
+     */
+    public BusOperation grant(long cycle, int[] blockedBlocks, int blockedCount, int blockShift) {
+        if (size == 0) {
+            return null;
+        }
+        int index = pick(blockedBlocks, blockedCount, blockShift);
+        if (index < 0) {
+            return null;
+        }
+        int slot = (head + index) & (operations.length - 1);
+        BusOperation operation = operations[slot];
+        long addedCycle = addedCycles[slot];
+        remove(index);
+        lastGrantedCore = operation.cacheCore;
+        grants[operation.cacheCore] += 1;
+        waitCycles[operation.cacheCore].record(Math.max(cycle - addedCycle, 0));
+        return operation;
+    }
+
+    /**
+     * @return the position (from the front) of the operation to go next, -1 if every operation is blocked
+     */
+    private int pick(int[] blockedBlocks, int blockedCount, int blockShift) {
+        boolean isByCore = arbitration == Arbitration.ROUND_ROBIN || arbitration == Arbitration.FIXED_PRIORITY;
+        if (!isByCore && blockedCount == 0) {
+            return size - 1;
+        }
+        int cores = grants.length;
+        int best = -1;
+        int bestRank = Integer.MAX_VALUE;
+        // from the back, so the oldest operation of a core is found first
+        for (int index = size - 1; index >= 0; index--) {
+            BusOperation operation = operations[(head + index) & (operations.length - 1)];
+            if (blockedCount > 0 && isBlocked(operation, blockedBlocks, blockedCount, blockShift)) {
+                continue;
+            }
+            if (!isByCore) {
+                return index;
+            }
+            int core = operation.cacheCore;
+            int rank = core;
+            if (arbitration == Arbitration.ROUND_ROBIN) {
+                rank = (core - lastGrantedCore - 1 + cores) % cores;
+            }
+            if (rank < bestRank) {
+                best = index;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBlocked(BusOperation operation, int[] blockedBlocks, int blockedCount, int blockShift) {
+        if (operation.transaction == Transaction.BUS_FLUSH) {
+            return false;
+        }
+        int block = operation.address >>> blockShift;
+        for (int i = 0; i < blockedCount; i++) {
+            if (blockedBlocks[i] == block) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Take out the operation at a position (from the front), moving the ones behind it forward
+     */
+    private void remove(int index) {
+        int mask = operations.length - 1;
+        for (int i = index; i < size - 1; i++) {
+            operations[(head + i) & mask] = operations[(head + i + 1) & mask];
+            addedCycles[(head + i) & mask] = addedCycles[(head + i + 1) & mask];
+        }
+        operations[(head + size - 1) & mask] = null;
+        size -= 1;
+    }
+
+    private void resize() {
+        BusOperation[] newOperations = new BusOperation[operations.length * 2];
+        long[] newAddedCycles = new long[operations.length * 2];
+        for (int i = 0; i < size; i++) {
+            newOperations[i] = operations[(head + i) & (operations.length - 1)];
+            newAddedCycles[i] = addedCycles[(head + i) & (operations.length - 1)];
+        }
+        operations = newOperations;
+        addedCycles = newAddedCycles;
+        head = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of operations of a core that were granted the bus
+     */
+    public long getGrants(int core) {
+        return grants[core];
+    }
+
+    /**
+     * @return the histogram of the cycles the operations of a core waited for the bus
+     */
+    public LatencyHistogram getWaitCycles(int core) {
+        return waitCycles[core];
+    }
+
+    /**
+     * Write the queue, front first, and the counts (see Checkpoint)
+     */
+    public void writeState(Checkpoint checkpoint) throws IOException {
+        DataOutputStream out = checkpoint.getOutput();
+        out.writeByte(arbitration.ordinal());
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            checkpoint.writeOperation(operations[(head + i) & (operations.length - 1)]);
+            out.writeLong(addedCycles[(head + i) & (operations.length - 1)]);
+        }
+        out.writeInt(lastGrantedCore);
+        for (int core = 0; core < grants.length; core++) {
+            out.writeLong(grants[core]);
+            waitCycles[core].writeState(out);
+        }
+    }
+
+    public void readState(Checkpoint checkpoint) throws IOException {
+        DataInputStream in = checkpoint.getInput();
+        Arbitration saved = Arbitration.values()[in.readByte()];
+        if (saved != arbitration) {
+            throw new IOException("The checkpoint was made with " + saved + " arbitration, not " + arbitration);
+        }
+        int queued = in.readInt();
+        operations = new BusOperation[Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(queued, 1)) * 2)];
+        addedCycles = new long[operations.length];
+        head = 0;
+        size = queued;
+        for (int i = 0; i < queued; i++) {
+            operations[i] = checkpoint.readOperation();
+            addedCycles[i] = in.readLong();
+        }
+        lastGrantedCore = in.readInt();
+        for (int core = 0; core < grants.length; core++) {
+            grants[core] = in.readLong();
+            waitCycles[core].readState(in);
+        }
+    }
+}
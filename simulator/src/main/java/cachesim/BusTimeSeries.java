@@ -0,0 +1,119 @@
+package cachesim;
+
+/**
+ * Samples of how busy the bus is, taken every so many cycles (see Simulation.setBusTimeSeries()): the busy cycles since
+ * the sample before, the number of operations waiting to go on the bus, and the cycles each core spent stalled since
+ * the sample before.
+ *
+ * The samples go into ring buffers of a fixed size, so a run of any length takes the same memory, and once they are
+ * full every new sample replaces the oldest one.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+public class BusTimeSeries {
+
+    public static final long DEFAULT_INTERVAL = 10000;
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private long interval;
+    private int capacity;
+    private long[] cycles;
+    // the cycles since the sample before
+    private long[] lengths;
+    private long[] busyCycles;
+    private int[] queueLengths;
+    // by core, then sample
+    private long[][] stalledCycles;
+    private long samples;
+    // the counts at the sample before
+    private long lastCycle;
+    private long lastBusyCycles;
+    private long[] lastStalledCycles;
+
+    /**
+     * @param interval the cycles from one sample to the next
+     * @param capacity the number of samples kept
+     */
+    public BusTimeSeries(long interval, int capacity, int numCores) {
+        this.interval = interval;
+        this.capacity = capacity;
+        cycles = new long[capacity];
+        lengths = new long[capacity];
+        busyCycles = new long[capacity];
+        queueLengths = new int[capacity];
+        stalledCycles = new long[numCores][capacity];
+        samples = 0;
+        lastStalledCycles = new long[numCores];
+    }
+
+    /**
+     * Take the counts the first sample is measured from
+     */
+    public void start(long cycle, long busyCycles, long[] stalledCycles) {
+        lastCycle = cycle;
+        lastBusyCycles = busyCycles;
+        System.arraycopy(stalledCycles, 0, lastStalledCycles, 0, stalledCycles.length);
+    }
+
+    /**
+     * @return the first cycle after `cycle` a sample is due at
+     */
+    public long getNextSampleCycle(long cycle) {
+        return (cycle / interval + 1) * interval;
+    }
+
+    /**
+     * @param busyCycles all the busy cycles of the bus so far
+     * @param stalledCycles all the cycles each core has spent stalled so far
+     */
+    public void sample(long cycle, long busyCycles, int queueLength, long[] stalledCycles) {
+        int slot = (int)(samples % capacity);
+        cycles[slot] = cycle;
+        lengths[slot] = cycle - lastCycle;
+        this.busyCycles[slot] = busyCycles - lastBusyCycles;
+        queueLengths[slot] = queueLength;
+        for (int core = 0; core < stalledCycles.length; core++) {
+            this.stalledCycles[core][slot] = stalledCycles[core] - lastStalledCycles[core];
+        }
+        samples += 1;
+        start(cycle, busyCycles, stalledCycles);
+    }
+
+    /**
+     * @return the cycle of the last sample
+     */
+    public long getLastCycle() {
+        return lastCycle;
+    }
+
+    /**
+     * Write the samples kept, oldest first, as CSV (cycle,cycles,busy,queue,stalled0,stalled1,...), where cycles is the
+     * length of the interval the sample ends
+     */
+    public void write(String fileName) throws IOException {
+        try (PrintStream file = new PrintStream(new BufferedOutputStream(new FileOutputStream(fileName)), false,
+                "UTF-8")) {
+            long first = Math.max(samples - capacity, 0);
+            file.println("# every " + interval + " cycles, " + samples + " samples, first " + first + " dropped");
+            StringBuilder header = new StringBuilder("cycle,cycles,busy,queue");
+            for (int core = 0; core < stalledCycles.length; core++) {
+                header.append(",stalled").append(core);
+            }
+            file.println(header);
+            for (long sample = first; sample < samples; sample++) {
+                int slot = (int)(sample % capacity);
+                StringBuilder line = new StringBuilder();
+                line.append(cycles[slot]).append(',').append(lengths[slot]).append(',').append(busyCycles[slot]);
+                line.append(',').append(queueLengths[slot]);
+                for (long[] coreStalledCycles : stalledCycles) {
+                    line.append(',').append(coreStalledCycles[slot]);
+                }
+                file.println(line);
+            }
+        }
+    }
+}
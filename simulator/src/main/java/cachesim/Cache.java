@@ -0,0 +1,868 @@
+package cachesim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.Math;
+
+/**
+ * The L1 cache.
+ */
+
+public class Cache {
+    /**
+     * Static variables:
+     * Words are 32 bits = 4 bytes (minimum blockSize/associativity must be 4)
+     *
+     * Inputs (stdin):
+     * “cacheSize”: cache size in bytes (4096)
+     * “associativity”: associativity of the cache (1)
+     * “blockSize”: block size in bytes (16)
+     *
+     * Inputs (trace):
+     * "instruction": LDR or STR or NOP
+     * "address" <- 32bits
+     *
+     * Intermediates:
+     * "offset"bits = log-base-2 (blockSize) bits
+     * "index" or arraySize = cacheSize/blockSize
+     * "index"bits = log-base-2 ("index") bits
+     * "tag" = (32bits - "offset"bits - "index"bits) bits
+     *
+     *  address
+     *
+     *
+     *
+     * Mapping main memory to cache:
+     * Cache Index = (Block Number) modulo (Number of Cache Blocks)
+     *
+     * Cache structure:
+     * "valid" variable
+     * "tag" variable = address/Block number/Number of Cache Blocks
+     *
+     * Not needed:
+     * "data" variable, we don't need/have data.
+     *
+     * Storage:
+     * every set ("row") holds up to `associativity` blocks, ordered from least to most recently used (LRU).
+     * Block `i` of set `index` lives at [index * associativity + i] of the flat tags/states arrays, so an access only
+     * shifts a few ints around within its own set and never allocates.
+     */
+
+    private static final State[] STATES = State.values();
+
+    private int[] tags;
+    private byte[] states;                                          // State.ordinal()
+    private int[] rowSizes;                                         // number of blocks in each set
+
+    private int cacheSize;
+    private int associativity;
+    private int blockSize;
+    private Protocol protocol;
+    private Bus[] buses;                                            // the banks of the interconnect
+    private Bus bus;                                                // the bank being dealt with right now
+    private int bankMask;                                           // number of banks - 1
+    private int cacheCoreNumber; // the core which the cache is for
+    private PrintStream out;
+
+    private int arraySize;
+    private int offsetBits;
+    private int indexBits;
+    private int tagBits;
+
+    private long cacheAccesses;
+    private long memoryAccesses;
+    private long readHit;
+    private long readMiss;
+    private long writeHit;
+    private long writeMiss;
+    private long update;
+    private long busRead;
+    private long privateData;
+    private long sharedData;
+    private long writeHitMemory;
+
+    private boolean isStalled;
+    private Transaction stallTransaction;                           // what the cache put on the bus when it stalled
+    private boolean smSendBusUpdate;
+    private int smSendBusUpdateAddress;
+
+    public Cache (int cacheSize, int associativity, int blockSize, Protocol proto, Bus bus, int cacheCoreNumber,
+                  PrintStream out) {
+        this(cacheSize, associativity, blockSize, proto, new Bus[] {bus}, cacheCoreNumber, out);
+    }
+
+    /**
+     * @param buses the banks of the interconnect (a power of two of them), a block goes over the bank given by the
+     *              lowest bits of its set index
+     */
+    public Cache (int cacheSize, int associativity, int blockSize, Protocol proto, Bus[] buses, int cacheCoreNumber,
+                  PrintStream out) {
+        cacheAccesses = 0;
+        memoryAccesses = 0;
+        readHit = 0;
+        readMiss = 0;
+        writeHit = 0;
+        writeMiss = 0;
+        update = 0;
+        busRead = 0;
+        privateData = 0;
+        sharedData = 0;
+        writeHitMemory = 0;
+
+        isStalled = false;
+        smSendBusUpdate = false;
+        smSendBusUpdateAddress = 0;
+
+        this.cacheSize = cacheSize;
+        this.associativity = associativity;
+        this.blockSize = blockSize;
+        this.protocol = proto;
+        this.buses = buses;
+        this.bankMask = buses.length - 1;
+        this.bus = buses[0];
+        this.cacheCoreNumber = cacheCoreNumber;
+        this.out = out;
+
+        arraySize = cacheSize/blockSize/associativity;              // this is the number of "rows" in the cache
+
+        tags = new int[arraySize * associativity];
+        states = new byte[arraySize * associativity];
+        rowSizes = new int[arraySize];
+
+        offsetBits = binaryLog(blockSize);
+        indexBits = binaryLog(cacheSize/blockSize);
+        tagBits = 32 - offsetBits - indexBits;
+
+        out.println("Protocol: " + this.protocol);
+        out.println("Core: " + this.cacheCoreNumber);
+        out.println("Cache Size: " + this.cacheSize + " Bytes");
+        out.println("Associativity: " + this.associativity);
+        out.println("Block Size: " + this.blockSize + " Bytes");
+        out.println("Offset: " + this.offsetBits + " Bits");
+        out.println("Set Index: " + this.indexBits + " Bits");
+        out.println("Tag bits: " + this.tagBits + " Bits");
+        out.println();
+    }
+
+    public void readCache (int address) {
+        cacheAccesses += 1;
+
+        int index = getIndex(address);
+        bus = buses[index & bankMask];
+        int row = index * associativity;
+        int tag = getTag(address);
+
+        for (int i = 0; i < rowSizes[index]; i++) {
+            if (tag == tags[row + i]) {
+                State state = STATES[states[row + i]];
+                // take care of the case of MSI/MESI/DIRECTORY and invalid state
+                if (protocol != Protocol.DRAGON && state == State.INVALID) {
+                    break;
+                }
+                checkSharedPrivate(state);
+                readHit += 1;
+                reorderCache(index, i);
+                return;
+            }
+        }
+        // from here, cache missed.
+        readMiss += 1;
+        isStalled = true;
+        if (protocol != Protocol.DRAGON) { // guranteed to be INVALID state
+            stallTransaction = Transaction.BUS_READ;
+        } else { //DRAGON
+            stallTransaction = Transaction.PROCESSOR_READ_MISS;
+        }
+        bus.putTransactionInBus(new BusOperation(stallTransaction, cacheCoreNumber, address));
+
+    }
+
+    public void writeCache (int address) {
+        cacheAccesses += 1;
+
+        int index = getIndex(address);
+        bus = buses[index & bankMask];
+        int row = index * associativity;
+        int tag = getTag(address);
+
+        for (int i = 0; i < rowSizes[index]; i++) {
+            if (tag == tags[row + i]) {
+                State state = STATES[states[row + i]];
+                // take care of the case of MSI/MESI/DIRECTORY and invalid state
+                if (protocol != Protocol.DRAGON && state == State.INVALID) {
+                    break;
+                }
+                checkSharedPrivate(state);
+                writeHit++;
+                if (protocol != Protocol.DRAGON && state == State.SHARED_CLEAN) {
+                    bus.putTransactionInBus(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, cacheCoreNumber, address));
+                } else if (protocol == Protocol.DRAGON) {
+                    if (state == State.SHARED_CLEAN || state == State.SHARED_MODIFIED) {
+                        bus.putTransactionInBus(new BusOperation(Transaction.BUS_UPDATE, cacheCoreNumber, address));
+                        // check if other cache has an update, use this var to change state to M if needed
+                        bus.isBusUpdateReceived = false;
+                    } else if (state == State.EXCLUSIVE) { // special case
+                        states[row + i] = (byte)State.MODIFIED.ordinal();
+                    }
+                }
+                reorderCache(index, i);
+                return;
+            }
+        }
+        // from here, cache missed.
+        writeMiss += 1;
+        isStalled = true;
+        if (protocol != Protocol.DRAGON) { // guranteed to be INVALID state
+            stallTransaction = Transaction.BUS_READ_EXCLUSIVE;
+        } else { //DRAGON
+            stallTransaction = Transaction.PROCESSOR_WRITE_MISS;
+        }
+        bus.putTransactionInBus(new BusOperation(stallTransaction, cacheCoreNumber, address));
+    }
+
+    /**
+     * Deal with our own operations on the interconnect, once they are completed (the operations of other cores are
+     * delivered by the bus instead, see snoop())
+     */
+    public void busSnoop (long cycles) {
+        // special case of get to Sm state from "invalid" state, need to send bus update to other cache
+        if (smSendBusUpdate) {
+            getBus(smSendBusUpdateAddress).putTransactionInBus(
+                    new BusOperation(Transaction.BUS_UPDATE, cacheCoreNumber, smSendBusUpdateAddress));
+            smSendBusUpdate = false;
+        }
+        if (bankMask == 0) {
+            receiveOwnOperation(cycles);
+            return;
+        }
+        for (int bank = 0; bank < buses.length; bank++) {
+            bus = buses[bank];
+            receiveOwnOperation(cycles);
+        }
+    }
+
+    /**
+     * Deal with what is on one bank of the interconnect (the current `bus`)
+     */
+    private void receiveOwnOperation (long cycles) {
+        BusOperation operation = bus.operation;
+        if (operation == null) { // case where no operation
+            return;
+            // check if transaction is from current core and if transaction is completed
+        } else if (cacheCoreNumber == operation.cacheCore && bus.isTransactionCompleted) {
+            // already received, it only stays on the bus until the next operation is granted
+            if (bus.hasCacheReceivedTransaction) {
+                return;
+            }
+            if (operation.transaction == Transaction.BUS_FLUSH) {
+                bus.hasCacheReceivedTransaction = true;
+                return;
+            }
+            if (bus.directory != null && !bus.isResponse) {
+                // the directory has sent out its messages, the answers come back as a response
+                completeDirectoryRequest(operation);
+                bus.waitForDirectory(cycles);
+            } else if (bus.hasTransactionResult) { // i.e, busRead/busReadX is successful
+                receiveResult(operation);
+            } else {                        // i.e, busRead/busReadX is unsuccessful, read from main memory
+                readFromMemory(operation);
+                bus.memoryAccessExtraCycles(cycles);
+            }
+        }
+        // else this operation is from other cores, and the bus has delivered it to us if we have its block, see snoop()
+    }
+
+    /**
+     * An operation that has just gone on a bank of the interconnect is for a block we have (see Bus.deliverSnoops()), so
+     * we must update our state to reflect it. This is the case for our own operations too, before they complete.
+     */
+    public void snoop (int bank, BusOperation operation) {
+        bus = buses[bank];
+        updateFromOtherCache(operation);
+    }
+
+    /**
+     * Our own operation is completed and another cache (or main memory, by now) has the data
+     */
+    private void receiveResult (BusOperation operation) {
+        busRead += 1;
+        // case of no other cache in Sm/Sc state (busUpdate unsuccessful)
+        if (!bus.isBusUpdateReceived) {
+            operation.lastTransaction = Transaction.BUS_UPDATE;
+            bus.isBusUpdateReceived = true;
+        }
+        updateSelfCache(operation);
+        isStalled = false;
+        bus.hasCacheReceivedTransaction = true;
+    }
+
+    /**
+     * Our own request has been dealt with by the directory (see Directory): if no other cache had the block it comes
+     * from main memory
+     */
+    private void completeDirectoryRequest (BusOperation operation) {
+        if (!bus.hasTransactionResult) {
+            readFromMemory(operation);
+        }
+    }
+
+    /**
+     * Our own operation is completed but no other cache had the data, so it has to come from main memory
+     */
+    private void readFromMemory (BusOperation operation) {
+        memoryAccesses += 1;
+        if (operation.transaction == Transaction.BUS_READ_EXCLUSIVE || operation.transaction == Transaction.PROCESSOR_WRITE_MISS) {
+            writeHitMemory += 1;
+        }
+        isStalled = true;
+        operation.lastTransaction = Transaction.BUS_READ;
+        if (protocol == Protocol.DRAGON) {
+            operation.lastTransaction = operation.transaction; // WrMiss or RdMiss
+        }
+    }
+
+    /**
+     * Functional (timing free) counterpart of busSnoop() once our own operation is completed: the data comes straight
+     * from main memory if no other cache had it, and the BUS_UPDATE that a DRAGON write miss needs goes on the bus right
+     * away.
+     */
+    public void completeFunctional (int bank, BusOperation operation) {
+        bus = buses[bank];
+        if (operation.transaction == Transaction.BUS_FLUSH) {
+            bus.hasCacheReceivedTransaction = true;
+            return;
+        }
+        if (bus.directory != null) {
+            completeDirectoryRequest(operation);
+        } else if (!bus.hasTransactionResult) {
+            readFromMemory(operation);
+        }
+        bus.sendDataToBus();
+        receiveResult(operation);
+        if (smSendBusUpdate) {
+            getBus(smSendBusUpdateAddress).putTransactionInBus(
+                    new BusOperation(Transaction.BUS_UPDATE, cacheCoreNumber, smSendBusUpdateAddress));
+            smSendBusUpdate = false;
+        }
+    }
+
+    /**
+     * @return true if the cache is not waiting on the bus and has nothing it still has to put on it
+     */
+    public boolean isQuiet () {
+        return !isStalled && !smSendBusUpdate;
+    }
+
+    /**
+     * This method is called when there is an operation from the bus (from this core) that we need to execute that updates the cache
+     * @param operation
+     */
+    private void updateSelfCache (BusOperation operation) {
+        int index = getIndex(operation.address);
+        int row = index * associativity;
+        int tag = getTag(operation.address);
+        if (operation.transaction == Transaction.PROCESSOR_WRITE_MISS) {
+            smSendBusUpdate = true;
+            smSendBusUpdateAddress = operation.address;
+        }
+        State state = getSelfUpdateState(operation);
+
+        if (state == null) {
+            out.println("updateSelfCache error in assigning state");
+            return;
+        }
+
+        // case where CacheSet has an existing row to be updated
+        for (int i = 0; i < rowSizes[index]; i++) {
+            if (tag == tags[row + i]) {
+                states[row + i] = (byte)state.ordinal();
+                reorderCache(index, i);
+                if (protocol == Protocol.DIRECTORY) {
+                    // it may have been dropped from the directory when it was invalidated
+                    buses[index & bankMask].snoopFilter.addSharer(getBlock(index, tag), cacheCoreNumber);
+                }
+                return;
+            }
+        }
+        // case where there is no existing row to be updated
+        addToCache(index, tag, state);  // as the set has a fixed size, will remove the LRU if full
+    }
+    /**
+     * @param operation an operation from this core that the bus has completed
+     * @return the state the block ends up in once it is in our cache, null if there isn't one
+     */
+    private State getSelfUpdateState (BusOperation operation) {
+        State state = null;
+        switch (operation.transaction) {
+            case BUS_READ:
+                if (protocol != Protocol.DRAGON) {
+                    state = State.SHARED_CLEAN;
+                } else { //DRAGON
+                    // uses RdMiss & WrMiss to indicate
+                }
+                break;
+            case PROCESSOR_READ_MISS:
+                state = State.SHARED_CLEAN;
+                break;
+            case PROCESSOR_WRITE_MISS:
+                state = State.SHARED_MODIFIED;
+                break;
+            case BUS_READ_EXCLUSIVE: // MSI/MESI/DIRECTORY only
+                state = State.MODIFIED;
+                break;
+            case BUS_UPDATE: // DRAGON only
+                state = State.SHARED_MODIFIED;
+                break;
+            default:
+                break;
+        }
+        if ((protocol == Protocol.MESI || protocol == Protocol.DIRECTORY)
+                && operation.lastTransaction == Transaction.BUS_READ) {
+            state = State.EXCLUSIVE;
+        }
+
+        if (protocol == Protocol.DRAGON) {
+            if (operation.lastTransaction == Transaction.PROCESSOR_READ_MISS) {
+                state = State.EXCLUSIVE;
+            } else if (operation.lastTransaction == Transaction.PROCESSOR_WRITE_MISS) {
+                state = State.MODIFIED;
+            } else if (operation.lastTransaction == Transaction.BUS_UPDATE) {
+                state = State.MODIFIED;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * This method is called when there is an operation from the bus (from OTHER core) that we need to execute that updates
+     * the cache. In this scenario, the block must exist in the cache before we can update.
+     * @param operation
+     */
+    private void updateFromOtherCache (BusOperation operation) {
+        int index = getIndex(operation.address);
+        int row = index * associativity;
+        int tag = getTag(operation.address);
+
+        for (int i = 0; i < rowSizes[index]; i++) {
+            if (tag == tags[row + i]) {
+                State state = STATES[states[row + i]];
+                switch (protocol) {
+                    case MSI:
+                        state = msiProtocolBus(state, operation.transaction);
+                        break;
+                    case MESI:
+                        state = mesiProtocolBus(state, operation.transaction);
+                        break;
+                    case DRAGON:
+                        state = dragonProtocolBus(state, operation.transaction);
+                        break;
+                    case DIRECTORY:
+                        state = directoryProtocolBus(state, operation.transaction);
+                        if (state == State.INVALID) {
+                            // so the directory stops sending us messages about it
+                            bus.snoopFilter.removeSharer(getBlock(index, tag), cacheCoreNumber);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                states[row + i] = (byte)state.ordinal();
+                reorderCache(index, i);
+                break;
+            }
+        }
+    }
+
+    private State msiProtocolBus (State state, Transaction transaction) {
+        switch (state) {
+            case MODIFIED:
+                if (transaction == Transaction.BUS_READ) {
+                    state = State.SHARED_CLEAN;
+                } else if (transaction == Transaction.BUS_READ_EXCLUSIVE) {
+                    state = State.INVALID;
+                    update += 1;
+                }
+                bus.flushToBus(cacheCoreNumber);
+                break;
+            case SHARED_CLEAN:
+                if (transaction == Transaction.BUS_READ_EXCLUSIVE) {
+                    state = State.INVALID;
+                    update += 1;
+                }
+                break;
+            case INVALID:
+                break;
+            default:
+                out.println("ERROR ERROR PARAMETER");
+                break;
+        }
+        return state;
+    }
+
+    private State mesiProtocolBus (State state, Transaction transaction) {
+        switch (state) {
+            case MODIFIED:
+                if (transaction == Transaction.BUS_READ) {
+                    state = State.SHARED_CLEAN;
+                } else if (transaction == Transaction.BUS_READ_EXCLUSIVE) {
+                    state = State.INVALID;
+                    update += 1;
+                }
+                bus.flushToBus(cacheCoreNumber);
+                break;
+            case EXCLUSIVE:
+                if (transaction == Transaction.BUS_READ) {
+                    state = State.SHARED_CLEAN;
+                } else if (transaction == Transaction.BUS_READ_EXCLUSIVE) {
+                    state = State.INVALID;
+                    update += 1;
+                }
+                bus.sendDataToBus();
+                break;
+            case SHARED_CLEAN:
+                if (transaction == Transaction.BUS_READ_EXCLUSIVE) {
+                    state = State.INVALID;
+                    update += 1;
+                }
+                break;
+            case INVALID:
+                break;
+            default:
+                out.println("ERROR ERROR PARAMETER");
+                break;
+
+        }
+        return state;
+    }
+
+    /**
+     * MESI, except that the data goes straight to the requester instead of being flushed on the bus, and that any sharer
+     * the directory forwards a request to sends it (there is no bus for main memory to see the request on)
+     */
+    private State directoryProtocolBus (State state, Transaction transaction) {
+        switch (state) {
+            case MODIFIED:
+            case EXCLUSIVE:
+            case SHARED_CLEAN:
+                if (transaction == Transaction.BUS_READ) {
+                    state = State.SHARED_CLEAN;
+                } else if (transaction == Transaction.BUS_READ_EXCLUSIVE) {
+                    state = State.INVALID;
+                    update += 1;
+                }
+                bus.sendDataToBus();
+                break;
+            case INVALID:
+                break;
+            default:
+                out.println("ERROR ERROR PARAMETER");
+                break;
+        }
+        return state;
+    }
+
+    private State dragonProtocolBus (State state, Transaction transaction) {
+        switch (state) {
+            case MODIFIED:
+                if (transaction == Transaction.BUS_READ || transaction == Transaction.PROCESSOR_WRITE_MISS) {
+                    state = State.SHARED_MODIFIED;
+                }
+                bus.sendDataToBus();
+                bus.flushToBus(cacheCoreNumber);
+                break;
+            case SHARED_MODIFIED:
+                if (transaction == Transaction.BUS_UPDATE || transaction == Transaction.PROCESSOR_WRITE_MISS) {
+                    state = State.SHARED_CLEAN;
+                    //Bus Update here (don't need to do anything to data)
+                    bus.isBusUpdateReceived = true;
+                    update += 1;
+                } else if (transaction == Transaction.BUS_READ) {
+                    bus.flushToBus(cacheCoreNumber);
+                }
+                bus.sendDataToBus();
+                break;
+            case SHARED_CLEAN:
+                if (transaction == Transaction.BUS_UPDATE || transaction == Transaction.PROCESSOR_READ_MISS) {
+                    //Bus Update here (don't need to do anything to data)
+                    bus.isBusUpdateReceived = true;
+                    update += 1;
+                }
+                bus.sendDataToBus();
+                break;
+            case EXCLUSIVE:
+                if (transaction == Transaction.BUS_READ || transaction == Transaction.PROCESSOR_READ_MISS) {
+                    state = State.SHARED_CLEAN;
+                }
+                bus.sendDataToBus();
+                break;
+            default:
+                out.println("ERROR ERROR PARAMETER");
+                break;
+        }
+        return state;
+    }
+
+    /**
+     * Check if calling busSnoop() right now would not change anything, and would keep on not changing anything until
+     * something else (the bus or another cache) does. Used to skip over cycles where nothing happens.
+     * @return true/false if above
+     */
+    public boolean isSnoopIdle () {
+        if (smSendBusUpdate) {
+            return false;
+        }
+        if (bankMask == 0) {
+            return !isOwnOperationWaiting();
+        }
+        for (int bank = 0; bank < buses.length; bank++) {
+            bus = buses[bank];
+            if (isOwnOperationWaiting()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if our own operation on the current `bus` is completed but we have not received it yet
+     */
+    private boolean isOwnOperationWaiting () {
+        BusOperation operation = bus.operation;
+        return operation != null && cacheCoreNumber == operation.cacheCore && bus.isTransactionCompleted
+                && !bus.hasCacheReceivedTransaction;
+    }
+
+    /**
+     * quick and dirty way to get current stats
+     */
+    public void printCacheStats () {
+        out.println("Number of times the cache was accessed: " + cacheAccesses);
+        out.println("Number of times main memory was accessed: " + memoryAccesses);
+        out.println("Number of times there was a read hit: " + readHit);
+        out.println("Number of times there was a read miss: " + readMiss);
+        out.println("Number of times there was a write hit: " + writeHit);
+        out.println("Number of times there was a write miss: " + writeMiss);
+    }
+
+    /**
+     * the actual data we need for the assignment
+     */
+    public CacheResults retrieveCacheResults() {
+        out.println("Data Cache miss rate(total miss/total cache access attempts): " + ((double)memoryAccesses / (double)cacheAccesses));
+        return getCurrentResults();
+    }
+
+    /**
+     * @return the same as retrieveCacheResults(), so far, without printing anything
+     */
+    public CacheResults getCurrentResults() {
+        CacheResults results = new CacheResults();
+        if (protocol == Protocol.MSI || protocol == Protocol.MESI || protocol == Protocol.DIRECTORY) {
+            // the blocks we got from other caches, the directory's own messages are counted by it (see Directory)
+            results.traffic = (busRead - memoryAccesses) * blockSize;
+        } else { // dragon
+            // bus update receives 1 word = 4 bytes
+            // we count number of received bytes
+            results.traffic = update * 4;
+        }
+        results.update = update;
+        results.privateData = privateData;
+        results.sharedData = sharedData;
+        results.misses = readMiss + writeMiss;
+        results.hitSelf = writeHit;
+        results.hitOther = writeMiss - writeHitMemory;
+        results.hitMemory = writeHitMemory;
+        return results;
+    }
+
+    /**
+     * Add the counters of another cache of the same core and configuration, e.g. one that has seen a different part of
+     * the sets (see FunctionalSimulation)
+     */
+    public void addResults (Cache other) {
+        cacheAccesses += other.cacheAccesses;
+        memoryAccesses += other.memoryAccesses;
+        readHit += other.readHit;
+        readMiss += other.readMiss;
+        writeHit += other.writeHit;
+        writeMiss += other.writeMiss;
+        update += other.update;
+        busRead += other.busRead;
+        privateData += other.privateData;
+        sharedData += other.sharedData;
+        writeHitMemory += other.writeHitMemory;
+    }
+
+    /**
+     * Write every set (in LRU order), the counters and what the cache is waiting on (see Checkpoint)
+     */
+    public void writeState (Checkpoint checkpoint) throws IOException {
+        DataOutputStream out = checkpoint.getOutput();
+        for (int index = 0; index < arraySize; index++) {
+            int row = index * associativity;
+            out.writeInt(rowSizes[index]);
+            for (int i = 0; i < rowSizes[index]; i++) {
+                out.writeInt(tags[row + i]);
+                out.writeByte(states[row + i]);
+            }
+        }
+        for (long counter : new long[] {cacheAccesses, memoryAccesses, readHit, readMiss, writeHit, writeMiss, update,
+                busRead, privateData, sharedData, writeHitMemory}) {
+            out.writeLong(counter);
+        }
+        out.writeBoolean(isStalled);
+        out.writeByte(stallTransaction == null ? -1 : stallTransaction.ordinal());
+        out.writeBoolean(smSendBusUpdate);
+        out.writeInt(smSendBusUpdateAddress);
+    }
+
+    public void readState (Checkpoint checkpoint) throws IOException {
+        DataInputStream in = checkpoint.getInput();
+        for (int index = 0; index < arraySize; index++) {
+            int row = index * associativity;
+            rowSizes[index] = in.readInt();
+            for (int i = 0; i < rowSizes[index]; i++) {
+                tags[row + i] = in.readInt();
+                states[row + i] = in.readByte();
+            }
+        }
+        cacheAccesses = in.readLong();
+        memoryAccesses = in.readLong();
+        readHit = in.readLong();
+        readMiss = in.readLong();
+        writeHit = in.readLong();
+        writeMiss = in.readLong();
+        update = in.readLong();
+        busRead = in.readLong();
+        privateData = in.readLong();
+        sharedData = in.readLong();
+        writeHitMemory = in.readLong();
+        isStalled = in.readBoolean();
+        byte transaction = in.readByte();
+        stallTransaction = transaction < 0 ? null : Transaction.values()[transaction];
+        smSendBusUpdate = in.readBoolean();
+        smSendBusUpdateAddress = in.readInt();
+    }
+
+    /**
+     * Check if cache is waiting for some operation on bus/main memory to complete
+     * @return true/false if above
+     */
+    public boolean isCacheStalled () {
+        return isStalled;
+    }
+
+    /**
+     * @return the transaction the cache put on the bus when it last stalled
+     */
+    public Transaction getStallTransaction () {
+        return stallTransaction;
+    }
+
+    private void checkSharedPrivate (State state) {
+        if (state == State.MODIFIED || state == State.EXCLUSIVE) {
+            privateData += 1;
+        } else {// state SHARED_CLEAN SHARED_MODIFIED
+            sharedData += 1;
+        }
+    }
+
+    /**
+     * @param number we are finding the the base 2 logarithm of this input
+     * @return log base 2 of the input integer
+     */
+    private static int binaryLog (int number) {
+        return (int)Math.round(Math.log((double)number) / Math.log((double)2));
+    }
+
+    /**
+     * A cache hit, due to temporal locality, that cache needs to be reordered to the back (most recently used end) of
+     * the set. Done in place by shifting the blocks behind it forward by one.
+     * @param index the set to be reordered
+     * @param position the block to be reordered
+     */
+    private void reorderCache (int index, int position) {
+        int row = index * associativity;
+        int last = row + rowSizes[index] - 1;
+        int tag = tags[row + position];
+        byte state = states[row + position];
+        System.arraycopy(tags, row + position + 1, tags, row + position, last - row - position);
+        System.arraycopy(states, row + position + 1, states, row + position, last - row - position);
+        tags[last] = tag;
+        states[last] = state;
+    }
+
+    /**
+     * Add a block to the back (most recently used end) of the set, removing the LRU block at the front if it is full.
+     * @param index the set to add to
+     */
+    private void addToCache (int index, int tag, State state) {
+        int row = index * associativity;
+        if (rowSizes[index] == associativity) {
+            int evictedTag = tags[row];
+            System.arraycopy(tags, row + 1, tags, row, associativity - 1);
+            System.arraycopy(states, row + 1, states, row, associativity - 1);
+            if (evictedTag != tag && !isInRow(index, evictedTag)) {
+                buses[index & bankMask].snoopFilter.removeSharer(getBlock(index, evictedTag), cacheCoreNumber);
+            }
+        } else {
+            rowSizes[index] += 1;
+        }
+        tags[row + rowSizes[index] - 1] = tag;
+        states[row + rowSizes[index] - 1] = (byte)state.ordinal();
+        buses[index & bankMask].snoopFilter.addSharer(getBlock(index, tag), cacheCoreNumber);
+    }
+
+    /**
+     * @return true if the set has a block (in any state) with this tag
+     */
+    private boolean isInRow (int index, int tag) {
+        int row = index * associativity;
+        for (int i = 0; i < rowSizes[index]; i++) {
+            if (tags[row + i] == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method will get the `index` of the set that we need to see see
+     * done by bitshifting left to get rid of the front bits, then bitshifting right to get rid of the rest
+     * @param address is the number to be truncated
+     * @return the `index`
+     */
+    public int getIndex (int address) {
+        return ((address << tagBits) >>> (tagBits + offsetBits))/this.associativity;
+    }
+
+    /**
+     * @return the bank of the interconnect that the address goes over
+     */
+    private Bus getBus (int address) {
+        return buses[getIndex(address) & bankMask];
+    }
+
+    /**
+     * @return the block (set index and tag) that the address is cached as, used as the key of the snoop filter
+     */
+    public long getBlock (int address) {
+        return getBlock(getIndex(address), getTag(address));
+    }
+
+    private static long getBlock (int index, int tag) {
+        return ((long)tag << 32) | index;
+    }
+
+    /**
+     * This method will help us get the `tag` value
+     * done by bitshifting right until only `tagBits` number of bits are left
+     * @param address is the number to be truncated
+     * @return the `tag`
+     */
+    private int getTag (int address) {
+        return address >>> (32 - tagBits);
+    }
+}
@@ -0,0 +1,45 @@
+package cachesim;
+
+/**
+ * The results of one cache (see Cache.retrieveCacheResults()), or the totals of several caches.
+ */
+public class CacheResults {
+
+    // amount of data traffic busread/buswrite/busupdate, in bytes
+    public long traffic;
+    // number of invalidations/updates
+    public long update;
+    // distribution of private/shared data (own cache only)
+    public long privateData;
+    public long sharedData;
+    // read and write misses
+    public long misses;
+    // writes that hit in the cache itself, got their block from another cache, or from main memory
+    public long hitSelf;
+    public long hitOther;
+    public long hitMemory;
+
+    /**
+     * Add the results of another cache to these
+     */
+    public void add(CacheResults other) {
+        traffic += other.traffic;
+        update += other.update;
+        privateData += other.privateData;
+        sharedData += other.sharedData;
+        misses += other.misses;
+        hitSelf += other.hitSelf;
+        hitOther += other.hitOther;
+        hitMemory += other.hitMemory;
+    }
+
+    /**
+     * @param cacheToCacheCycles the cycles a write takes to get its block from another cache (from main memory it is
+     *                           always Bus.CYCLES_MEMORY)
+     * @return the average number of cycles a write waits for its block
+     */
+    public double getAverageLatency(int cacheToCacheCycles) {
+        return (double)(hitOther * cacheToCacheCycles + hitMemory * Bus.CYCLES_MEMORY)
+                / (double)(hitSelf + hitOther + hitMemory);
+    }
+}
@@ -0,0 +1,167 @@
+package cachesim;
+
+/**
+ * A snapshot of the full state of a simulation at the start of a cycle, so that a run can be resumed from there (see
+ * Simulation.saveCheckpoint() and Simulation.restoreCheckpoint()).
+ *
+ * The file is gzipped, and starts with a header:
+ *   magic    4 bytes  "CSNP"
+ *   version  1 byte   13
+ *   protocol, cache size, associativity, block size and number of cores, which a run must match to be restored
+ * followed by the state of the simulation, the trace, the bus and every processor and its cache, each written by the
+ * class itself (writeState() / readState()).
+ *
+ * A bus operation can be in several places at once (on a bank, in its queue, outstanding in memory), and is told apart
+ * by identity, so every operation is written once, the first time it comes up, and after that only by number.
+ * Restoring gives back one object per operation, shared the same way.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class Checkpoint {
+
+    public static final byte[] MAGIC = {'C', 'S', 'N', 'P'};
+    public static final byte VERSION = 13;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int NO_OPERATION = -1;
+    private static final Transaction[] TRANSACTIONS = Transaction.values();
+
+    private DataOutputStream out;
+    private DataInputStream in;
+    private IdentityHashMap<BusOperation, Integer> writtenOperations;
+    private List<BusOperation> readOperations;
+
+    private Checkpoint(DataOutputStream out) {
+        this.out = out;
+        writtenOperations = new IdentityHashMap<>();
+    }
+
+    private Checkpoint(DataInputStream in) {
+        this.in = in;
+        readOperations = new ArrayList<>();
+    }
+
+    /**
+     * Open a checkpoint for writing, with its header already written
+     */
+    public static Checkpoint create(String fileName, Protocol protocol, int cacheSize, int associativity,
+                                    int blockSize, int numCores) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(fileName), BUFFER_SIZE), BUFFER_SIZE));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(protocol.ordinal());
+        out.writeInt(cacheSize);
+        out.writeInt(associativity);
+        out.writeInt(blockSize);
+        out.writeInt(numCores);
+        return new Checkpoint(out);
+    }
+
+    /**
+     * Open a checkpoint for reading, after checking that it was made by a run with the same configuration
+     */
+    public static Checkpoint open(String fileName, Protocol protocol, int cacheSize, int associativity,
+                                  int blockSize, int numCores) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(fileName), BUFFER_SIZE), BUFFER_SIZE));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException(fileName + " is not a checkpoint");
+                }
+            }
+            if (in.readByte() != VERSION) {
+                throw new IOException(fileName + " is not a checkpoint of version " + VERSION);
+            }
+            Protocol savedProtocol = Protocol.values()[in.readByte()];
+            int savedCacheSize = in.readInt();
+            int savedAssociativity = in.readInt();
+            int savedBlockSize = in.readInt();
+            int savedCores = in.readInt();
+            if (savedProtocol != protocol || savedCacheSize != cacheSize || savedAssociativity != associativity
+                    || savedBlockSize != blockSize || savedCores != numCores) {
+                throw new IOException(fileName + " is a checkpoint of " + savedProtocol + " " + savedCacheSize + " "
+                        + savedAssociativity + " " + savedBlockSize + " with " + savedCores + " cores");
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new Checkpoint(in);
+    }
+
+    public DataOutputStream getOutput() {
+        return out;
+    }
+
+    public DataInputStream getInput() {
+        return in;
+    }
+
+    /**
+     * @param operation any operation, or null
+     */
+    public void writeOperation(BusOperation operation) throws IOException {
+        if (operation == null) {
+            out.writeInt(NO_OPERATION);
+            return;
+        }
+        Integer number = writtenOperations.get(operation);
+        if (number != null) {
+            out.writeInt(number);
+            return;
+        }
+        out.writeInt(writtenOperations.size());
+        writtenOperations.put(operation, writtenOperations.size());
+        out.writeByte(operation.transaction.ordinal());
+        out.writeByte(operation.lastTransaction == null ? -1 : operation.lastTransaction.ordinal());
+        out.writeInt(operation.address);
+        out.writeInt(operation.cacheCore);
+    }
+
+    /**
+     * @return the operation as written by writeOperation(), the same object every time it is read
+     */
+    public BusOperation readOperation() throws IOException {
+        int number = in.readInt();
+        if (number == NO_OPERATION) {
+            return null;
+        }
+        if (number < readOperations.size()) {
+            return readOperations.get(number);
+        }
+        if (number != readOperations.size()) {
+            throw new IOException("Checkpoint is corrupt (operation " + number + " out of order)");
+        }
+        Transaction transaction = TRANSACTIONS[in.readByte()];
+        byte lastTransaction = in.readByte();
+        int address = in.readInt();
+        int cacheCore = in.readInt();
+        BusOperation operation = new BusOperation(transaction, cacheCore, address,
+                lastTransaction < 0 ? null : TRANSACTIONS[lastTransaction]);
+        readOperations.add(operation);
+        return operation;
+    }
+
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+        } else {
+            in.close();
+        }
+    }
+}
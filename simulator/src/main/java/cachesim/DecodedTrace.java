@@ -0,0 +1,218 @@
+package cachesim;
+
+/**
+ * A whole trace (every core's .data or .trace file), decoded once into compact primitive storage, so that many simulations can
+ * read it at the same time without parsing the text again.
+ *
+ * Every line is stored as is: a 1 byte type and a 4 byte address (NOP runs stay as a single line with their count), so
+ * about 5 bytes per line instead of the 10-12 of the text. Once loaded it is never written to again, and every
+ * simulation reads it through its own Cursors, so it can be shared between threads.
+ *
+ * The lines can be kept on the heap, off the heap (direct buffers), or in a memory-mapped temporary file for traces that
+ * do not fit in memory. They are stored in chunks, as a single buffer can only hold 2GB.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class DecodedTrace {
+
+    public enum Storage {
+        HEAP,
+        OFF_HEAP,
+        MAPPED;
+    }
+
+    private static final int CHUNK_BITS = 26;               // 64M lines (256MB of addresses) per chunk
+    private static final int CHUNK_LINES = 1 << CHUNK_BITS;
+    private static final int FIRST_CHUNK_LINES = 1 << 16;  // when the number of lines is not known in advance
+
+    private int numCores;
+    private long[] lineCounts;
+    // chunks of each core, line i is in chunk (i >>> CHUNK_BITS) at (i & (CHUNK_LINES - 1))
+    private ByteBuffer[][] types;
+    private ByteBuffer[][] addresses;
+    private long sizeInBytes;
+
+    // only used while loading
+    private Storage storage;
+    private FileChannel spill;
+    private long spillPosition;
+
+    /**
+     * Decode the trace files `arg_0` to `arg_(cores-1)`.
+     */
+    public DecodedTrace(String arg, int cores, Storage storage) throws IOException {
+        numCores = cores;
+        lineCounts = new long[cores];
+        types = new ByteBuffer[cores][];
+        addresses = new ByteBuffer[cores][];
+        sizeInBytes = 0;
+
+        this.storage = storage;
+        spill = null;
+        spillPosition = 0;
+        if (storage == Storage.MAPPED) {
+            File file = File.createTempFile("trace", ".decoded");
+            file.deleteOnExit();
+            spill = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        try {
+            for (int core = 0; core < cores; core++) {
+                TraceSource reader = Instruction.openTrace(arg, core);
+                if (Instruction.isCompressed(arg, core)) {
+                    // decompress on another thread while we store the lines
+                    reader = new PrefetchingTraceSource(reader, PrefetchingTraceSource.DEFAULT_CAPACITY,
+                            "trace-decode-" + core);
+                }
+                long maxLines = reader.countLines();
+                if (maxLines < 0) {
+                    // not known until it has been read, the chunks grow as it is
+                    types[core] = new ByteBuffer[0];
+                    addresses[core] = new ByteBuffer[0];
+                } else {
+                    int chunks = (int)((maxLines + CHUNK_LINES - 1) >>> CHUNK_BITS);
+                    types[core] = new ByteBuffer[chunks];
+                    addresses[core] = new ByteBuffer[chunks];
+                    for (int chunk = 0; chunk < chunks; chunk++) {
+                        allocate(core, chunk, (int)Math.min(CHUNK_LINES, maxLines - ((long)chunk << CHUNK_BITS)));
+                    }
+                }
+
+                long line = 0;
+                while (reader.readLine()) {
+                    int chunk = (int)(line >>> CHUNK_BITS);
+                    int offset = (int)(line & (CHUNK_LINES - 1));
+                    if (chunk == types[core].length || offset == types[core][chunk].capacity()) {
+                        grow(core, chunk);
+                    }
+                    types[core][chunk].put(offset, (byte)reader.getType());
+                    addresses[core][chunk].putInt(4 * offset, reader.getAddress());
+                    line += 1;
+                }
+                lineCounts[core] = line;
+                reader.close();
+            }
+        } finally {
+            // the mappings stay valid after the channel is closed
+            if (spill != null) {
+                spill.close();
+            }
+        }
+    }
+
+    private void allocate(int core, int chunk, int lines) throws IOException {
+        if (spill != null) {
+            types[core][chunk] = spill.map(FileChannel.MapMode.READ_WRITE, spillPosition, lines);
+            spillPosition += lines;
+            addresses[core][chunk] = spill.map(FileChannel.MapMode.READ_WRITE, spillPosition, 4L * lines);
+            spillPosition += 4L * lines;
+        } else if (storage == Storage.OFF_HEAP) {
+            types[core][chunk] = ByteBuffer.allocateDirect(lines);
+            addresses[core][chunk] = ByteBuffer.allocateDirect(4 * lines);
+        } else {
+            types[core][chunk] = ByteBuffer.allocate(lines);
+            addresses[core][chunk] = ByteBuffer.allocate(4 * lines);
+        }
+        sizeInBytes += 5L * lines;
+    }
+
+    /**
+     * Make room for the first line of a new chunk, or double the size of the last one (up to CHUNK_LINES), for traces
+     * whose length is not known in advance. Mapped chunks always get CHUNK_LINES right away, they only take up disk.
+     */
+    private void grow(int core, int chunk) throws IOException {
+        if (chunk == types[core].length) {
+            types[core] = Arrays.copyOf(types[core], chunk + 1);
+            addresses[core] = Arrays.copyOf(addresses[core], chunk + 1);
+            allocate(core, chunk, spill != null ? CHUNK_LINES : FIRST_CHUNK_LINES);
+            return;
+        }
+        ByteBuffer oldTypes = types[core][chunk];
+        ByteBuffer oldAddresses = addresses[core][chunk];
+        allocate(core, chunk, Math.min(2 * oldTypes.capacity(), CHUNK_LINES));
+        oldTypes.clear();
+        oldAddresses.clear();
+        types[core][chunk].put(oldTypes).clear();
+        addresses[core][chunk].put(oldAddresses).clear();
+        sizeInBytes -= 5L * oldTypes.capacity();
+    }
+
+    public int getNumCores() {
+        return numCores;
+    }
+
+    public long getLineCount(int core) {
+        return lineCounts[core];
+    }
+
+    /**
+     * @return the number of bytes used to store the lines
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * @return a new cursor at the start of the trace of `core`, each simulation needs its own
+     */
+    public Cursor getCursor(int core) {
+        return new Cursor(core);
+    }
+
+    /**
+     * Reads the trace of one core, the trace itself is never changed.
+     */
+    public class Cursor implements TraceSource {
+
+        private int core;
+        private long line;      // the next line to read
+        private int type;
+        private int address;
+
+        private Cursor(int core) {
+            this.core = core;
+            line = 0;
+        }
+
+        @Override
+        public boolean readLine() {
+            if (line >= lineCounts[core]) {
+                return false;
+            }
+            int chunk = (int)(line >>> CHUNK_BITS);
+            int offset = (int)(line & (CHUNK_LINES - 1));
+            type = types[core][chunk].get(offset);
+            address = addresses[core][chunk].getInt(4 * offset);
+            line += 1;
+            return true;
+        }
+
+        @Override
+        public int getType() {
+            return type;
+        }
+
+        @Override
+        public int getAddress() {
+            return address;
+        }
+
+        @Override
+        public long skipLines(long lines) {
+            long skipped = Math.min(lines, lineCounts[core] - line);
+            line += skipped;
+            return skipped;
+        }
+
+        @Override
+        public double getProgress() {
+            return lineCounts[core] == 0 ? 1 : (double)line / lineCounts[core];
+        }
+    }
+}
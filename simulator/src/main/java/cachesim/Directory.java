@@ -0,0 +1,231 @@
+package cachesim;
+
+/**
+ * The sharers directory at main memory for the DIRECTORY protocol, one per bank of the interconnect (which is then the
+ * way to the directory, not a bus everyone snoops).
+ *
+ * Instead of broadcasting, a request goes to the directory, which looks up who holds the block and sends point-to-point
+ * messages to just those caches: a read is forwarded to one sharer, which sends the block to the requester, and a read
+ * exclusive invalidates every sharer, which each send back an acknowledgement. A block no other cache has comes from
+ * main memory. Every message takes `messageLatency` cycles, and the messages to different caches go at the same time,
+ * so a request takes 3 (forward or invalidate, answer) or 2 (memory) message latencies plus the transfer of the data.
+ *
+ * The bank of the interconnect is the link to the directory. A request holds it for CYCLES_ACCESS cycles plus the time
+ * to send every message that goes into or out of the directory for it (the request, its forwards or invalidations, and
+ * the answer and block from main memory), a word a cycle, and its completion holds it for CYCLES_ACCESS. In between,
+ * the request waits for its answers: on the link, if the bus is atomic (the default, like for the snooping protocols),
+ * or off it, with a bounded number of requests outstanding per bank (one per block) on a split transaction bus (see
+ * Bus.waitForDirectory()). So the more sharers get invalidated, the less bandwidth is left.
+ *
+ * The sharers are the snoop filter of the bank, which the caches keep exact for this protocol (an invalidated block is
+ * dropped from it) and which the bank looks a request up in anyway to deliver it (see Bus.deliverSnoops()), so it is a
+ * full-map directory. With `pointers` > 0 it is a limited-pointer one instead: once a block
+ * has more sharers than pointers the directory no longer knows who they are, and has to send its invalidations to every
+ * other cache (a read can still be forwarded to a sharer it does have a pointer to).
+ *
+ * The messages are counted by kind, and their bytes are added up apart for the control (CONTROL_BYTES for every message,
+ * including the header of the ones with data) and for the blocks they carry. The traffic of the caches is only the
+ * blocks that go from one cache to another, like for MSI and MESI, so the protocols can be compared.
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+public class Directory {
+
+    public static final int DEFAULT_MESSAGE_LATENCY = 5;
+    public static final int CYCLES_ACCESS = 1;
+    // address and type of a message, or the header of one with data
+    public static final int CONTROL_BYTES = 8;
+
+    private int cores;
+    private int blockSize;
+    private int cyclesBlock;
+    // 0 for a full map
+    private int pointers;
+    private int messageLatency;
+
+    private long requests;
+    private long forwards;
+    private long invalidations;
+    private long acknowledgements;
+    private long dataMessages;
+    private long broadcasts;
+    private long controlBytes;
+    private long dataBytes;
+
+    // of the request being dealt with
+    private long readyCycle;
+    private long linkCycles;
+
+    /**
+     * @param pointers the most sharers a block has pointers for, 0 for a full map
+     * @param messageLatency the cycles a message takes from one node to another
+     */
+    public Directory(int cores, int blockSize, int pointers, int messageLatency) {
+        if (cores > SnoopFilter.MAX_CORES) {
+            throw new IllegalArgumentException("A directory keeps the sharers of at most " + SnoopFilter.MAX_CORES
+                    + " cores.");
+        }
+        if (messageLatency < 1) {
+            throw new IllegalArgumentException("A directory message takes at least 1 cycle.");
+        }
+        this.cores = cores;
+        this.blockSize = blockSize;
+        this.cyclesBlock = Bus.CYCLES_WORD * blockSize / 4;
+        this.pointers = pointers;
+        this.messageLatency = messageLatency;
+        readyCycle = 0;
+        linkCycles = 0;
+    }
+
+    /**
+     * Send out the messages of a request that has just reached the directory in `cycle`, and count them. The caches that
+     * get a forward or invalidation are the ones that snoop the request.
+     * @param holders a bit mask of the cores whose cache holds the block
+     */
+    public void request(BusOperation operation, long holders, long cycle) {
+        long others = holders & ~(1L << operation.cacheCore);
+        boolean hasBlock = others != holders;
+        int messages = 1;
+        int withData = 0;
+        // the messages into and out of the directory, the rest go between the caches
+        int homeMessages = 1;
+        int homeData = 0;
+        requests += 1;
+        if (operation.transaction == Transaction.BUS_READ_EXCLUSIVE && others != 0) {
+            int invalidated = Long.bitCount(others);
+            if (pointers > 0 && Long.bitCount(holders) > pointers) {
+                invalidated = cores - 1;
+                broadcasts += 1;
+            }
+            invalidations += invalidated;
+            acknowledgements += invalidated;
+            messages += 2 * invalidated;
+            homeMessages += invalidated;
+            if (!hasBlock) {
+                // one of the sharers sends the block along
+                withData += 1;
+            }
+            readyCycle = cycle + 3 * messageLatency + (hasBlock ? 0 : cyclesBlock);
+        } else if (operation.transaction == Transaction.BUS_READ && others != 0) {
+            forwards += 1;
+            withData += 1;
+            messages += 1;
+            homeMessages += 1;
+            readyCycle = cycle + 3 * messageLatency + cyclesBlock;
+        } else if (hasBlock) {
+            // the only copy is already ours, the directory just says so
+            acknowledgements += 1;
+            messages += 1;
+            homeMessages += 1;
+            readyCycle = cycle + 2 * messageLatency;
+        } else {
+            withData += 1;
+            homeData += 1;
+            readyCycle = cycle + 2 * messageLatency + Bus.CYCLES_MEMORY;
+        }
+        dataMessages += withData;
+        controlBytes += (long)(messages + withData) * CONTROL_BYTES;
+        dataBytes += (long)withData * blockSize;
+        long homeBytes = (long)(homeMessages + homeData) * CONTROL_BYTES + (long)homeData * blockSize;
+        linkCycles = CYCLES_ACCESS + homeBytes / 4 * Bus.CYCLES_WORD;
+        readyCycle = Math.max(readyCycle, cycle + linkCycles);
+    }
+
+    /**
+     * @return the cycle the requester has all the answers to the last request by
+     */
+    public long getReadyCycle() {
+        return readyCycle;
+    }
+
+    /**
+     * @return the cycles the last request holds the link to the directory for (see Bus.addAdditionalCycles())
+     */
+    public long getLinkCycles() {
+        return linkCycles;
+    }
+
+    /**
+     * @return the bytes sent so far: of control, and of the blocks in the messages with data
+     */
+    public long[] getBytes() {
+        return new long[] {controlBytes, dataBytes};
+    }
+
+    /**
+     * @return the cycles a request takes to get its block from another cache
+     */
+    public int getCacheToCacheCycles() {
+        return 3 * messageLatency + cyclesBlock;
+    }
+
+    /**
+     * @return the messages sent so far: requests, forwards, invalidations, acknowledgements and messages with data, and
+     * then the number of requests whose invalidations had to be broadcast
+     */
+    public long[] getMessages() {
+        return new long[] {requests, forwards, invalidations, acknowledgements, dataMessages, broadcasts};
+    }
+
+    /**
+     * Print the messages of several directories (e.g. of every bank) added up
+     */
+    public static void printMessages(Directory[] directories, PrintStream out) {
+        long[] messages = new long[6];
+        long[] bytes = new long[2];
+        for (Directory directory : directories) {
+            long[] counts = directory.getMessages();
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] += counts[i];
+            }
+            counts = directory.getBytes();
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] += counts[i];
+            }
+        }
+        int pointers = directories[0].pointers;
+        out.println("Directory (" + (pointers == 0 ? "full map" : pointers + " pointers") + ", "
+                + directories[0].messageLatency + " cycle messages) requests/forwards/invalidations/acks/data: "
+                + messages[0] + "/" + messages[1] + "/" + messages[2] + "/" + messages[3] + "/" + messages[4]
+                + ", broadcasts: " + messages[5]);
+        out.println("Directory control/data bytes: " + bytes[0] + "/" + bytes[1]);
+    }
+
+    /**
+     * Write the counts and the last request (see Checkpoint), the sharers are written with the snoop filter
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(pointers);
+        out.writeInt(messageLatency);
+        for (long count : getMessages()) {
+            out.writeLong(count);
+        }
+        out.writeLong(controlBytes);
+        out.writeLong(dataBytes);
+        out.writeLong(readyCycle);
+        out.writeLong(linkCycles);
+    }
+
+    public void readState(DataInputStream in) throws IOException {
+        int savedPointers = in.readInt();
+        int savedMessageLatency = in.readInt();
+        if (savedPointers != pointers || savedMessageLatency != messageLatency) {
+            throw new IOException("The checkpoint was made with a directory of " + savedPointers + " pointers and "
+                    + savedMessageLatency + " cycle messages, not " + pointers + " and " + messageLatency);
+        }
+        requests = in.readLong();
+        forwards = in.readLong();
+        invalidations = in.readLong();
+        acknowledgements = in.readLong();
+        dataMessages = in.readLong();
+        broadcasts = in.readLong();
+        controlBytes = in.readLong();
+        dataBytes = in.readLong();
+        readyCycle = in.readLong();
+        linkCycles = in.readLong();
+    }
+}
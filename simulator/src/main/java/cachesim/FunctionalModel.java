@@ -0,0 +1,61 @@
+package cachesim;
+
+/**
+ * Runs loads and stores through the caches without any timing: whatever a cache puts on the bus is carried out right
+ * away, snooped by every cache that has its block (or looked up in the directory, for DIRECTORY) and then completed, before the next
+ * access. Nothing ever stalls, and a block that no other cache has comes straight from main memory.
+ *
+ * The caches go through exactly the same protocol code as with timing, only the bus is skipped, so their states, LRU
+ * order and counters are what a timed run would have if every transaction happened on its own.
+ */
+public class FunctionalModel {
+
+    private Bus[] buses;
+    private Cache[] caches;
+
+    /**
+     * @param bus the bus of the caches, which must have nothing on it
+     */
+    public FunctionalModel(Bus bus, Cache[] caches) {
+        this(new Bus[] {bus}, caches);
+    }
+
+    /**
+     * @param buses the banks of the interconnect of the caches, which must have nothing on them
+     */
+    public FunctionalModel(Bus[] buses, Cache[] caches) {
+        this.buses = buses;
+        this.caches = caches;
+        for (int bank = 0; bank < buses.length; bank++) {
+            buses[bank].setCaches(caches, bank);
+        }
+    }
+
+    /**
+     * @param type LDR - 0, STR - 1 (anything else is a NOP, which does nothing)
+     */
+    public void access(int core, int type, int address) {
+        if (type == 0) {
+            caches[core].readCache(address);
+        } else if (type == 1) {
+            caches[core].writeCache(address);
+        } else {
+            return;
+        }
+        // completing an operation can put another one on a different bank
+        boolean isBusy = true;
+        while (isBusy) {
+            isBusy = false;
+            for (int bank = 0; bank < buses.length; bank++) {
+                Bus bus = buses[bank];
+                BusOperation operation;
+                while ((operation = bus.pollOperation()) != null) {
+                    bus.grantFunctional(operation);
+                    caches[operation.cacheCore].completeFunctional(bank, operation);
+                    isBusy = true;
+                }
+                bus.isTransactionCompleted = true;
+            }
+        }
+    }
+}
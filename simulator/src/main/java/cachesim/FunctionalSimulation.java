@@ -0,0 +1,261 @@
+package cachesim;
+
+/**
+ * A functional (timing free, see FunctionalModel) run of the whole trace, split by set over several threads.
+ *
+ * The instructions of all cores are merged into one stream in the order of a functional run (every core takes one
+ * instruction per step, in core order, and a run of NOPs takes as many steps as it has NOPs). Without timing, an access
+ * only ever touches its own set, in every cache, so the stream is dealt out by set index to shards that each have a
+ * bus and a cache for every core of their own, and only see their own sets. Every shard sees the accesses to its sets
+ * in the same order as a single run would, so once the counters of the shards are added up, the results are exactly
+ * those of a run with one shard.
+ */
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FunctionalSimulation {
+
+    private static final int BATCH_SIZE = 4096;
+    // batches that can be waiting for each shard
+    private static final int QUEUE_SIZE = 16;
+    private static final long[] LAST_BATCH = new long[0];
+
+    private Protocol protocol;
+    private Instruction instructions;
+    private int numCores;
+    private int cacheSize;
+    private int associativity;
+    private int blockSize;
+    private Shard[] shards;
+    private long steps;
+
+    /**
+     * @param shards the number of shards (and threads) to split the sets over, at most the number of sets
+     */
+    public FunctionalSimulation(Protocol protocol, Instruction instructions, int cacheSize, int associativity,
+                                int blockSize, int shards) {
+        this.protocol = protocol;
+        this.instructions = instructions;
+        this.numCores = instructions.getNumCores();
+        this.cacheSize = cacheSize;
+        this.associativity = associativity;
+        this.blockSize = blockSize;
+        this.shards = new Shard[Math.max(1, Math.min(shards, cacheSize / blockSize / associativity))];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard();
+        }
+        steps = 0;
+    }
+
+    /**
+     * Give the shards of the DIRECTORY protocol new directories (see Directory), only before running. Only how many
+     * messages are sent depends on them.
+     * @param pointers the most sharers a block has pointers for, 0 for a full map
+     */
+    public void setDirectory(int pointers, int messageLatency) {
+        for (Shard shard : shards) {
+            shard.setDirectory(pointers, messageLatency);
+        }
+    }
+
+    /**
+     * Deal out the whole trace to the shards (on this thread), and wait for all of them to finish
+     */
+    public void run() throws InterruptedException {
+        if (shards.length == 1) {
+            dealInstructions();
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(shards.length);
+        try {
+            Future<?>[] results = new Future<?>[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                results[i] = pool.submit((Callable<Void>)shards[i]);
+            }
+            dealInstructions();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void dealInstructions() throws InterruptedException {
+        Cache mapping = shards[0].caches[0];
+        boolean isFirstAccess = true;
+        // the step each core is at
+        long[] nextSteps = new long[numCores];
+        boolean[] isDone = new boolean[numCores];
+        int coresDone = 0;
+        long step = 0;
+        while (coresDone < numCores) {
+            long next = Long.MAX_VALUE;
+            for (int core = 0; core < numCores; core++) {
+                if (isDone[core]) {
+                    continue;
+                }
+                if (nextSteps[core] == step) {
+                    long instruction = instructions.getInstruction(core);
+                    int type = Instruction.getType(instruction);
+                    if (instruction == Instruction.END) {
+                        isDone[core] = true;
+                        coresDone += 1;
+                        // the cores finish in step order, so the last one sets it
+                        steps = step;
+                        continue;
+                    }
+                    if (type == 2) {
+                        int nops = instructions.getNopsLeft(core);
+                        instructions.skipNops(core, nops);
+                        nextSteps[core] += nops + 1;
+                    } else {
+                        int address = Instruction.getAddress(instruction);
+                        Shard shard = shards[mapping.getIndex(address) % shards.length];
+                        if (isFirstAccess) {
+                            // the very first transaction of MSI/MESI is taken as a BUS_UPDATE no one answered (see
+                            // Cache.receiveResult()), which has to happen in the shard that gets it
+                            shard.bus.isBusUpdateReceived = protocol == Protocol.DRAGON;
+                            isFirstAccess = false;
+                        }
+                        shard.add(core, type, address);
+                        nextSteps[core] += 1;
+                    }
+                }
+                next = Math.min(next, nextSteps[core]);
+            }
+            step = next;
+        }
+        for (Shard shard : shards) {
+            shard.finish();
+        }
+    }
+
+    /**
+     * Print the results of every core and their totals, in the same terms as a timed simulation
+     */
+    public void printResults(PrintStream out) {
+        CacheResults total = new CacheResults();
+        for (int core = 0; core < numCores; core++) {
+            // a cache that was never used, to add up the counters of the core's caches in all shards
+            Cache cache = new Cache(cacheSize, associativity, blockSize, protocol, shards[0].bus, core, out);
+            for (Shard shard : shards) {
+                cache.addResults(shard.caches[core]);
+            }
+            cache.printCacheStats();
+            total.add(cache.retrieveCacheResults());
+            out.println();
+        }
+        long snoopsDelivered = 0;
+        long snoopsFiltered = 0;
+        for (Shard shard : shards) {
+            snoopsDelivered += shard.bus.snoopFilter.getSnoopsDelivered();
+            snoopsFiltered += shard.bus.snoopFilter.getSnoopsFiltered();
+        }
+
+        out.println("Functional steps: " + steps + " (" + shards.length + " shards)");
+        out.println("Total amount of data traffic (bytes):  " + total.traffic);
+        out.println("Total number of invalidations/updates: " + total.update);
+        out.println("Private data accesses(self): " + total.privateData);
+        out.println("Shared data accesses(self):  " + total.sharedData);
+        int memoryCycles;
+        if (protocol == Protocol.DIRECTORY) {
+            memoryCycles = shards[0].bus.directory.getCacheToCacheCycles();
+        } else if (protocol == Protocol.MSI || protocol == Protocol.MESI) {
+            memoryCycles = shards[0].bus.cycles_block;
+        } else {
+            memoryCycles = Bus.CYCLES_WORD;
+        }
+        out.println("Average latency (number of clock cycles): " + total.getAverageLatency(memoryCycles));
+        out.println("Snoops delivered/filtered out: " + snoopsDelivered + "/" + snoopsFiltered);
+        if (protocol == Protocol.DIRECTORY) {
+            Directory[] directories = new Directory[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                directories[i] = shards[i].bus.directory;
+            }
+            Directory.printMessages(directories, out);
+        }
+    }
+
+    /**
+     * The sets of one shard, with their own bus and caches, that get their accesses in batches from the dealing thread
+     */
+    private class Shard implements Callable<Void> {
+
+        private Bus bus;
+        private Cache[] caches;
+        private FunctionalModel model;
+        private BlockingQueue<long[]> batches;
+        private long[] batch;
+        private int batchSize;
+
+        private Shard() {
+            bus = new Bus(protocol, blockSize / 4, numCores);
+            // only the shard of the first access gets the first transaction (see dealInstructions())
+            bus.isBusUpdateReceived = true;
+            caches = new Cache[numCores];
+            for (int core = 0; core < numCores; core++) {
+                caches[core] = new Cache(cacheSize, associativity, blockSize, protocol, bus, core, Simulation.QUIET);
+            }
+            setDirectory(0, Directory.DEFAULT_MESSAGE_LATENCY);
+            model = new FunctionalModel(bus, caches);
+            batches = new ArrayBlockingQueue<>(QUEUE_SIZE);
+            batch = new long[BATCH_SIZE];
+            batchSize = 0;
+        }
+
+        private void setDirectory(int pointers, int messageLatency) {
+            if (protocol == Protocol.DIRECTORY) {
+                bus.setDirectory(new Directory(numCores, blockSize, pointers, messageLatency));
+            }
+        }
+
+        /**
+         * Run an access straight away if there is only one shard, otherwise queue it for the shard's thread
+         */
+        private void add(int core, int type, int address) throws InterruptedException {
+            if (shards.length == 1) {
+                model.access(core, type, address);
+                return;
+            }
+            batch[batchSize] = (long)core << 33 | (long)type << 32 | (address & 0xffffffffL);
+            batchSize += 1;
+            if (batchSize == BATCH_SIZE) {
+                batches.put(batch);
+                batch = new long[BATCH_SIZE];
+                batchSize = 0;
+            }
+        }
+
+        private void finish() throws InterruptedException {
+            if (shards.length == 1) {
+                return;
+            }
+            if (batchSize > 0) {
+                batches.put(Arrays.copyOf(batch, batchSize));
+            }
+            batches.put(LAST_BATCH);
+        }
+
+        @Override
+        public Void call() throws InterruptedException {
+            long[] accesses;
+            while ((accesses = batches.take()) != LAST_BATCH) {
+                for (long access : accesses) {
+                    model.access((int)(access >>> 33), (int)(access >>> 32) & 1, (int)access);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package cachesim;
+
+/**
+ * class to read and interpret the .data files.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+public class Instruction {
+
+    // packed value returned by getInstruction when the processor is out of instructions
+    public static final long END = -1L;
+    // marks an empty NOP buffer
+    private static final int NO_NOPS = -1;
+
+    private TraceSource[] sources;
+    // stores a buffer of instructions if required (the number of NOPs left, or NO_NOPS)
+    private int[] buffers;
+    private int[] currentLine;
+    // the number of lines read from each trace
+    private long[] linesRead;
+
+    /**
+     * @param arg the name of the trace, core i reads from `arg_i.data`
+     * @param cores the number of cores to read traces for
+     */
+    public Instruction(String arg, int cores) throws IOException {
+        this(arg, cores, 0);
+    }
+
+    /**
+     * @param arg the name of the trace, core i reads from `arg_i.data`
+     * @param cores the number of cores to read traces for
+     * @param prefetch the number of lines to read ahead of the simulation on a thread per core, 0 to read them as
+     *                 they are needed (unless they have to be decompressed)
+     */
+    public Instruction(String arg, int cores, int prefetch) throws IOException {
+        this(new TraceSource[cores]);
+        for (int i = 0; i < cores; i++) {
+            sources[i] = openTrace(arg, i);
+            // compressed traces are always decompressed on a thread of their own
+            if (prefetch > 0 || isCompressed(arg, i)) {
+                sources[i] = new PrefetchingTraceSource(sources[i],
+                        prefetch > 0 ? prefetch : PrefetchingTraceSource.DEFAULT_CAPACITY, "trace-prefetch-" + i);
+            }
+        }
+    }
+
+    /**
+     * Read a trace that has already been decoded, through cursors of our own (so others can read it at the same time)
+     */
+    public Instruction(DecodedTrace trace) {
+        this(new TraceSource[trace.getNumCores()]);
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = trace.getCursor(i);
+        }
+    }
+
+    private Instruction(TraceSource[] sources) {
+        this.sources = sources;
+        currentLine = new int[sources.length];
+        linesRead = new long[sources.length];
+        buffers = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            buffers[i] = NO_NOPS;
+        }
+    }
+
+    /**
+     * @return the number of cores there are traces for
+     */
+    public int getNumCores() {
+        return sources.length;
+    }
+
+    /**
+     * Print the back-pressure statistics of every core that reads its trace ahead
+     */
+    public void printPrefetchStats(PrintStream out) {
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] instanceof PrefetchingTraceSource) {
+                ((PrefetchingTraceSource) sources[i]).printStats("Trace prefetch core " + i, out);
+            }
+        }
+    }
+
+    /**
+     * @param arg the name of the trace
+     * @return the number of trace files `arg_0`, `arg_1`... (.data, .trace, .data.gz or .trace.gz) that exist, or else
+     * the number of cores in `arg.pack`, i.e. the number of cores
+     * @throws IOException if there is a pack, but it cannot be read
+     */
+    public static int countTraceFiles(String arg) throws IOException {
+        int cores = 0;
+        while (new File(findTraceFile(arg, cores)).isFile()) {
+            cores += 1;
+        }
+        if (cores == 0 && new File(getPackFileName(arg)).isFile()) {
+            cores = TracePack.countCores(getPackFileName(arg));
+        }
+        return cores;
+    }
+
+    public static String getTraceFileName(String arg, int core) {
+        return arg.toLowerCase() + "_" + core + ".data";
+    }
+
+    public static String getBinaryTraceFileName(String arg, int core) {
+        String name = getTraceFileName(arg, core);
+        return name.substring(0, name.length() - ".data".length()) + ".trace";
+    }
+
+    public static String getPackFileName(String arg) {
+        return arg.toLowerCase() + ".pack";
+    }
+
+    /**
+     * @return the first of the core's text trace, binary trace, gzipped text trace or gzipped binary trace that exists,
+     * or else the name the text trace would have
+     */
+    public static String findTraceFile(String arg, int core) {
+        String text = getTraceFileName(arg, core);
+        String binary = getBinaryTraceFileName(arg, core);
+        for (String fileName : new String[] {text, binary, text + ".gz", binary + ".gz"}) {
+            if (new File(fileName).isFile()) {
+                return fileName;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * @return true if the trace of the core has to be decompressed as it is read (it is gzipped or in a pack)
+     */
+    public static boolean isCompressed(String arg, int core) {
+        String fileName = findTraceFile(arg, core);
+        if (new File(fileName).isFile()) {
+            return fileName.endsWith(".gz");
+        }
+        return new File(getPackFileName(arg)).isFile();
+    }
+
+    /**
+     * Open the trace of a core, whichever format it is in (binary traces are told apart by their first bytes, not their
+     * name). Compressed traces are decompressed as they are read, never as a whole.
+     */
+    public static TraceSource openTrace(String arg, int core) throws IOException {
+        String fileName = findTraceFile(arg, core);
+        if (!isCompressed(arg, core)) {
+            ByteBuffer start = ByteBuffer.allocate(BinaryTraceReader.MAGIC.length);
+            try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+                int read = 0;
+                while (start.hasRemaining() && read >= 0) {
+                    read = channel.read(start);
+                }
+            }
+            start.flip();
+            if (!BinaryTraceReader.hasMagic(start)) {
+                return new TraceReader(fileName);
+            }
+            return checkCore(new BinaryTraceReader(fileName), core);
+        }
+
+        InputStream in;
+        if (new File(fileName).isFile()) {
+            in = new GZIPInputStream(new FileInputStream(fileName), TracePack.BUFFER_SIZE);
+        } else {
+            fileName = getPackFileName(arg) + " (core " + core + ")";
+            in = TracePack.open(getPackFileName(arg), core);
+        }
+        BufferedInputStream buffered = new BufferedInputStream(in, TracePack.BUFFER_SIZE);
+        byte[] start = new byte[BinaryTraceReader.MAGIC.length];
+        buffered.mark(start.length);
+        int length = 0;
+        int read = 0;
+        while (length < start.length && read >= 0) {
+            read = buffered.read(start, length, start.length - length);
+            length += Math.max(read, 0);
+        }
+        buffered.reset();
+        if (!BinaryTraceReader.hasMagic(ByteBuffer.wrap(start, 0, length))) {
+            return new TraceReader(fileName, Channels.newChannel(buffered));
+        }
+        return checkCore(new BinaryTraceReader(fileName, Channels.newChannel(buffered)), core);
+    }
+
+    private static BinaryTraceReader checkCore(BinaryTraceReader reader, int core) throws IOException {
+        if (reader.getCore() != core) {
+            reader.close();
+            throw new IOException("The binary trace of core " + reader.getCore() + " was given for core " + core);
+        }
+        return reader;
+    }
+
+    /**
+     * @param processor is the processor that you want to get the instruction for
+     * @return the current instruction packed into a long, unpack it with getType() and getAddress()
+     *
+     * type
+     * is type of instruction
+     * LDR - 0
+     * STR - 1
+     * NOP - 2
+     *
+     * address
+     * is the address (NOP stores as the number of NOPs left)
+     *
+     * Will return END (-1 in both fields) if out of instructions
+     */
+    public long getInstruction(int processor) {
+        // check if it is a NOP instruction that has yet to be executed
+        int nopsLeft = buffers[processor];
+        if (nopsLeft != NO_NOPS) {
+            buffers[processor] = nopsLeft == 0 ? NO_NOPS : nopsLeft - 1;
+            return pack(2, nopsLeft);
+        }
+        // else grab a new instruction from the file
+        // for debugging
+        currentLine[processor] += 1;
+        // get instructions from new line if exists
+        TraceSource source = sources[processor];
+        if (!source.readLine()) {
+            return END;
+        }
+        linesRead[processor] += 1;
+        int type = source.getType();
+        int address = source.getAddress();
+        // set buffer for NOPs (a `2 0x0` line is a single NOP)
+        if (type == 2 && address > 0) {
+            buffers[processor] = address - 1;
+        }
+        return pack(type, address);
+    }
+
+    /**
+     * @param processor is the processor that you want to check
+     * @return the number of NOPs that getInstruction() will return before it has to read the next line
+     */
+    public int getNopsLeft(int processor) {
+        return buffers[processor] == NO_NOPS ? 0 : buffers[processor] + 1;
+    }
+
+    /**
+     * Same as calling getInstruction() `count` times, as long as count is at most getNopsLeft()
+     */
+    public void skipNops(int processor, int count) {
+        int nopsLeft = getNopsLeft(processor) - count;
+        buffers[processor] = nopsLeft == 0 ? NO_NOPS : nopsLeft - 1;
+    }
+
+    /**
+     * @return how much of the traces has been read so far, from 0 to 1 (the average over all cores), or -1 if that is
+     * not known for some trace (see TraceSource.getProgress())
+     */
+    public double getProgress() {
+        double progress = 0;
+        for (TraceSource source : sources) {
+            double sourceProgress = source.getProgress();
+            if (sourceProgress < 0) {
+                return -1;
+            }
+            progress += sourceProgress;
+        }
+        return progress / sources.length;
+    }
+
+    /**
+     * Write where every core is in its trace (see Checkpoint)
+     */
+    public void writeState(Checkpoint checkpoint) throws IOException {
+        DataOutputStream out = checkpoint.getOutput();
+        for (int i = 0; i < sources.length; i++) {
+            out.writeLong(linesRead[i]);
+            out.writeInt(currentLine[i]);
+            out.writeInt(buffers[i]);
+            // where to seek to, if the trace can be read from the middle
+            long[] position = sources[i].getPosition();
+            if (position == null) {
+                position = new long[0];
+            }
+            out.writeInt(position.length);
+            for (long value : position) {
+                out.writeLong(value);
+            }
+        }
+    }
+
+    /**
+     * Move every core (which must not have read anything yet) on to where it was in its trace when the checkpoint was
+     * made. Uncompressed traces go straight there (see TraceSource.seek()), the others are read up to there, which
+     * takes about as long as reading them normally would.
+     */
+    public void readState(Checkpoint checkpoint) throws IOException {
+        DataInputStream in = checkpoint.getInput();
+        for (int i = 0; i < sources.length; i++) {
+            long lines = in.readLong();
+            currentLine[i] = in.readInt();
+            buffers[i] = in.readInt();
+            long[] position = new long[in.readInt()];
+            for (int j = 0; j < position.length; j++) {
+                position[j] = in.readLong();
+            }
+            boolean isSought = position.length > 0 && sources[i].seek(position);
+            if (!isSought && sources[i].skipLines(lines) != lines) {
+                throw new IOException("The trace of core " + i + " is shorter than when the checkpoint was made");
+            }
+            linesRead[i] = lines;
+        }
+    }
+
+    public static long pack(int type, int address) {
+        return ((long)type << 32) | (address & 0xFFFFFFFFL);
+    }
+
+    public static int getType(long instruction) {
+        return (int)(instruction >> 32);
+    }
+
+    public static int getAddress(long instruction) {
+        return (int)instruction;
+    }
+}
@@ -0,0 +1,149 @@
+package cachesim;
+
+/**
+ * A histogram of latencies (in cycles) with log-sized buckets, in the manner of HdrHistogram: every value below
+ * 2 * SUB_BUCKETS has a bucket of its own, and above that every power of two is split into SUB_BUCKETS buckets, so a
+ * value is off by at most 1/SUB_BUCKETS (about 3%) of itself. The buckets cover every long, in a fixed array, so
+ * recording never allocates.
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // enough for a shift of up to 63 - SUB_BUCKET_BITS
+    public static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private long[] counts;
+    private long count;
+    private long total;
+    private long max;
+
+    public LatencyHistogram() {
+        counts = new long[BUCKETS];
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+
+    /**
+     * @param value a latency, at least 0
+     */
+    public void record(long value) {
+        counts[getBucket(value)] += 1;
+        count += 1;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of all values
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double)total / count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the highest value of the bucket the percentile falls in (never above the maximum), 0 if there are no
+     * values
+     */
+    public long getValueAtPercentile(double percentile) {
+        long rank = (long)Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(getBucketTo(bucket), max);
+            }
+        }
+        return 0;
+    }
+
+    public long getCountAt(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * @return the lowest value that goes into the bucket
+     */
+    public static long getBucketFrom(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long)(bucket - shift * SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @return the highest value that goes into the bucket
+     */
+    public static long getBucketTo(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : getBucketFrom(bucket + 1) - 1;
+    }
+
+    private static int getBucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int)value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int)(value >>> shift);
+    }
+
+    /**
+     * Write the non-empty buckets (see Checkpoint)
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        int buckets = 0;
+        for (long bucketCount : counts) {
+            buckets += bucketCount == 0 ? 0 : 1;
+        }
+        out.writeInt(buckets);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (counts[bucket] != 0) {
+                out.writeShort(bucket);
+                out.writeLong(counts[bucket]);
+            }
+        }
+        out.writeLong(count);
+        out.writeLong(total);
+        out.writeLong(max);
+    }
+
+    public void readState(DataInputStream in) throws IOException {
+        counts = new long[BUCKETS];
+        int buckets = in.readInt();
+        for (int i = 0; i < buckets; i++) {
+            int bucket = in.readShort();
+            counts[bucket] = in.readLong();
+        }
+        count = in.readLong();
+        total = in.readLong();
+        max = in.readLong();
+    }
+}
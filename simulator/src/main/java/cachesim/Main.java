@@ -0,0 +1,477 @@
+package cachesim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+
+public class Main {
+
+    private static final String[] OPTIONS = {"cycle-by-cycle", "cores", "threads", "trace-storage", "prefetch",
+            "sample", "sample-period", "sample-window", "sample-warmup", "checkpoint", "checkpoint-at",
+            "checkpoint-every", "restore", "stall-cycles", "bus-stats", "bus-interval", "bus-samples", "arbitration",
+            "split-bus", "split-bus-compare", "banks", "directory-pointers", "directory-latency", "progress",
+            "functional"};
+    // the options each kind of run takes, besides the ones for the directory
+    private static final String[] TIMED_OPTIONS = {"cycle-by-cycle", "cores", "prefetch", "checkpoint",
+            "checkpoint-at", "checkpoint-every", "restore", "stall-cycles", "bus-stats", "bus-interval", "bus-samples",
+            "arbitration", "split-bus", "banks", "progress"};
+    private static final String[] SAMPLED_OPTIONS = {"cycle-by-cycle", "cores", "prefetch", "sample", "sample-period",
+            "sample-window", "sample-warmup", "restore", "arbitration", "split-bus", "banks", "progress"};
+    private static final String[] FUNCTIONAL_OPTIONS = {"cores", "threads", "prefetch", "functional"};
+    private static final String[] SWEEP_OPTIONS = {"cycle-by-cycle", "cores", "threads", "trace-storage", "split-bus",
+            "split-bus-compare", "banks"};
+    // an option, the one it has no effect without, and the value that one needs (empty if none)
+    private static final String[][] DEPENDENCIES = {
+            {"checkpoint-at", "checkpoint", "FILE"},
+            {"checkpoint-every", "checkpoint", "FILE"},
+            {"bus-interval", "bus-stats", "F"},
+            {"bus-samples", "bus-stats", "F"},
+            {"sample-period", "sample", ""},
+            {"sample-window", "sample", ""},
+            {"sample-warmup", "sample", ""}};
+
+    /**
+     * String[0] “protocol” (MSI, MESI, DRAGON or DIRECTORY)
+     * String[1] “input_file”
+     * String[2] “cache_size”
+     * String[3] “associativity”
+     * String[4] “block_size”
+     *
+     * or, to run many configurations at once and print them as one table:
+     * sweep “protocols” “input_file” “cache_sizes” “associativities” “block_sizes”
+     * where each is a comma separated list, and sizes can also be ranges of powers of two, e.g.
+     * sweep MSI,MESI,DRAGON bodytrack 1024-65536 1,2,4 16-64
+     *
+     * or, to get the miss rate of every configuration in a grid like a sweep's from one pass over the trace, with
+     * coherence ignored (every core on its own):
+     * stack “input_file” “cache_sizes” “associativities” “block_sizes”
+     *
+     * or, to convert the text traces input_file_N.data into the compact binary output_file_N.trace (which are read instead
+     * of the text traces when those are not there):
+     * convert “input_file” [“output_file”]
+     *
+     * or, to put the traces input_file_N (of any format, gzipped or not) into the single compressed output_file.pack
+     * (which is read when there are no separate trace files):
+     * pack “input_file” [“output_file”]
+     *
+     * Any of the traces can also be given gzipped (input_file_N.data.gz or input_file_N.trace.gz), they are decompressed
+     * on a thread per core as they are read.
+     *
+     * Options (anywhere in the arguments):
+     * --cycle-by-cycle     step through every single cycle instead of skipping over cycles where nothing happens
+     * --cores=N            simulate N cores (needs input_file_0.data to input_file_(N-1).data), by default as many as
+     *                      there are consecutive trace files
+     * --threads=N          the number of simulations a sweep runs at once (or traces a stack analysis reads at once, or
+     *                      shards a functional run is split into), by default one per available processor
+     * --trace-storage=S    where a sweep keeps the trace it decodes once for all of its runs: heap (default), off-heap
+     *                      or mapped (a temporary file, for traces that do not fit in memory)
+     * --prefetch[=N]       read up to N lines (by default 65536) of each core's trace ahead on a thread of its own, and
+     *                      print whether the reader or the simulation had to wait on the other
+     * --sample             estimate the results from short detailed windows, with the caches kept warm in between by
+     *                      running the trace functionally (no timing), and print them with 95% confidence intervals
+     * --sample-period=N    instructions of every core from one window to the next (default 100000)
+     * --sample-window=N    instructions of every core measured in each window (default 2000)
+     * --sample-warmup=N    instructions of every core simulated in detail before each window, but not
+     *                      measured (default 8000)
+     * --checkpoint=FILE    save the full state of the simulation to FILE at --checkpoint-at=CYCLE and/or every
+     *                      --checkpoint-every=N cycles (each checkpoint replaces the one before)
+     * --restore=FILE       resume the simulation from a checkpoint made with the same protocol, configuration and trace
+     * --stall-cycles[=F]   print the count, mean, p50, p99 and maximum of the cycles each core spent stalled on each
+     *                      kind of transaction, and write their histograms to the file F (CSV, or JSON if F ends in
+     *                      .json)
+     * --bus-stats[=F]      print the busy and idle cycles of the bus and its busy cycles by transaction, and sample the
+     *                      busy cycles, the bus queue and the cycles each core stalled every --bus-interval=N cycles
+     *                      (default 10000) into the CSV file F, which keeps the last --bus-samples=N (default 65536)
+     * --arbitration=A      how the bus picks the next operation to go on it: flush-first (default, flushes first and the
+     *                      rest in order), fcfs, round-robin (by core) or fixed-priority (lowest core first); the grants
+     *                      and waits of every core are printed with --bus-stats
+     * --split-bus[=N]      split every memory access on the bus into a request and a response phase, so that the bus is
+     *                      free while memory works, with up to N (by default 4) accesses outstanding at once (for
+     *                      DIRECTORY, the requests waiting on the directory of every bank)
+     * --split-bus-compare  (sweep only) run the grid with an atomic and with a split transaction bus (of --split-bus=N
+     *                      outstanding accesses), and print how much faster the split one is
+     * --banks=K            split the bus into K banks, each with its own queue, arbitration and timing, that take the
+     *                      blocks of every Kth cache set (also for a sweep); --bus-stats prints how busy each one was
+     * --directory-pointers=P  (DIRECTORY) keep pointers to at most P sharers of a block, and broadcast its invalidations
+     *                      once it has more; by default the directory has a full bit map of them
+     * --directory-latency=N  (DIRECTORY) the cycles a message takes from a cache to the directory or another cache
+     *                      (default 5)
+     * --progress[=S]       print how far the simulation has got (cycles per second, instructions per core, how much of
+     *                      the trace is read and the time left, bus queue and stalled cores) every S seconds (by
+     *                      default 5) to stderr
+     * --functional         run the trace without any timing (every bus transaction is carried out at once), split by
+     *                      cache set over --threads threads, for the hit/miss and coherence counts of huge traces
+     *
+     * An option that is unknown, or that has no effect on what is run (e.g. a bus option with --functional), is an
+     * error.
+     */
+    public static void main(String[] args) throws IOException {
+        try {
+            run(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(String[] args) throws IOException {
+        Hashtable<String, String> options = new Hashtable<>();
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int split = arg.indexOf('=');
+                if (split < 0) {
+                    options.put(arg.substring(2), "");
+                } else {
+                    options.put(arg.substring(2, split), arg.substring(split + 1));
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+        args = positional.toArray(new String[0]);
+        boolean isEventDriven = !options.containsKey("cycle-by-cycle");
+        checkDependencies(options);
+
+        if (args[0].equalsIgnoreCase("sweep")) {
+            runSweep(args, options, isEventDriven);
+            return;
+        }
+        if (args[0].equalsIgnoreCase("stack")) {
+            runStackAnalysis(args, options);
+            return;
+        }
+        if (args[0].equalsIgnoreCase("convert")) {
+            runConvert(args, options);
+            return;
+        }
+        if (args[0].equalsIgnoreCase("pack")) {
+            runPack(args, options);
+            return;
+        }
+
+        String[] inputs = new String[5];
+        inputs[0] = args[0];
+        inputs[1] = args[1];
+        // set to all default values if lacking cacheSize, associativity and/or blockSize
+        if (args.length < 5) {
+            System.out.println("Insufficient inputs, using default values.");
+            inputs[2] = "4096";
+            inputs[3] = "1";
+            inputs[4] = "16";
+        } else {
+            inputs[2] = args[2];
+            inputs[3] = args[3];
+            inputs[4] = args[4];
+        }
+
+        int numCores = getNumCores(inputs[1], options);
+        int cacheSize = Integer.parseInt(inputs[2]);
+        int associativity = Integer.parseInt(inputs[3]);
+        int blockSize = Integer.parseInt(inputs[4]);
+
+        Protocol protocol = null;
+        switch(inputs[0].toUpperCase()) {
+            case "MSI":
+                protocol = Protocol.MSI;
+                break;
+
+            case "MESI":
+                protocol = Protocol.MESI;
+                break;
+
+            case "DRAGON":
+                protocol = Protocol.DRAGON;
+                break;
+
+            case "DIRECTORY":
+                protocol = Protocol.DIRECTORY;
+                break;
+
+            default:
+                System.out.println("Unrecognized protocol.");
+                System.exit(1);
+                break;
+        }
+        if (options.containsKey("functional")) {
+            checkOptions(options, "a functional run", protocol == Protocol.DIRECTORY, FUNCTIONAL_OPTIONS);
+        } else if (options.containsKey("sample")) {
+            checkOptions(options, "a sampled run", protocol == Protocol.DIRECTORY, SAMPLED_OPTIONS);
+        } else {
+            checkOptions(options, "a timed run", protocol == Protocol.DIRECTORY, TIMED_OPTIONS);
+        }
+
+        int prefetch = 0;
+        if (options.containsKey("prefetch")) {
+            prefetch = options.get("prefetch").isEmpty()
+                    ? PrefetchingTraceSource.DEFAULT_CAPACITY : Integer.parseInt(options.get("prefetch"));
+        }
+        Instruction instructions = new Instruction(inputs[1], numCores, prefetch);
+        if (options.containsKey("functional")) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            if (options.containsKey("threads")) {
+                threads = Integer.parseInt(options.get("threads"));
+            }
+            FunctionalSimulation simulation = new FunctionalSimulation(protocol, instructions, cacheSize,
+                    associativity, blockSize, threads);
+            simulation.setDirectory(getOption(options, "directory-pointers", 0),
+                    getOption(options, "directory-latency", Directory.DEFAULT_MESSAGE_LATENCY));
+            try {
+                simulation.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            simulation.printResults(System.out);
+            instructions.printPrefetchStats(System.out);
+            return;
+        }
+        Simulation simulation = new Simulation(protocol, instructions, cacheSize, associativity, blockSize,
+                isEventDriven, getOption(options, "banks", 1), System.out);
+        if (options.containsKey("progress")) {
+            double seconds = options.get("progress").isEmpty() ? 5 : Double.parseDouble(options.get("progress"));
+            simulation.setProgressReporter(new ProgressReporter(seconds, System.err));
+        }
+        if (options.containsKey("arbitration")) {
+            simulation.setArbitration(BusQueue.Arbitration.valueOf(
+                    options.get("arbitration").toUpperCase().replace('-', '_')));
+        }
+        if (options.containsKey("split-bus")) {
+            simulation.setSplitTransactions(getOption(options, "split-bus", Bus.DEFAULT_OUTSTANDING));
+        }
+        simulation.setDirectory(getOption(options, "directory-pointers", 0),
+                getOption(options, "directory-latency", Directory.DEFAULT_MESSAGE_LATENCY));
+        if (options.containsKey("restore")) {
+            simulation.restoreCheckpoint(options.get("restore"));
+        }
+        if (options.containsKey("bus-stats") && !options.get("bus-stats").isEmpty()) {
+            simulation.setBusTimeSeries(new BusTimeSeries(
+                    getLongOption(options, "bus-interval", BusTimeSeries.DEFAULT_INTERVAL),
+                    getOption(options, "bus-samples", BusTimeSeries.DEFAULT_CAPACITY), numCores));
+        }
+        if (options.containsKey("sample")) {
+            Sampling sampling = new Sampling(getOption(options, "sample-period", Sampling.DEFAULT_PERIOD),
+                    getOption(options, "sample-window", Sampling.DEFAULT_WINDOW),
+                    getOption(options, "sample-warmup", Sampling.DEFAULT_WARMUP));
+            simulation.runSampled(sampling);
+            sampling.printResults(simulation.getCacheToCacheCycles(), System.out);
+        } else {
+            if (options.containsKey("checkpoint")) {
+                simulation.runProcessors(options.get("checkpoint"), getLongOption(options, "checkpoint-at", -1),
+                        getLongOption(options, "checkpoint-every", 0));
+            } else {
+                simulation.runProcessors();
+            }
+            simulation.calculateResults();
+            if (options.containsKey("stall-cycles")) {
+                simulation.printStallCycles();
+                if (!options.get("stall-cycles").isEmpty()) {
+                    simulation.writeStallCycles(options.get("stall-cycles"));
+                }
+            }
+            if (options.containsKey("bus-stats")) {
+                simulation.printBusStats();
+                if (!options.get("bus-stats").isEmpty()) {
+                    simulation.writeBusTimeSeries(options.get("bus-stats"));
+                }
+            }
+        }
+        instructions.printPrefetchStats(System.out);
+    }
+
+    private static void runSweep(String[] args, Hashtable<String, String> options, boolean isEventDriven)
+            throws IOException {
+        if (args.length < 6) {
+            System.out.println("Usage: sweep protocols input_file cache_sizes associativities block_sizes");
+            System.exit(1);
+        }
+        List<Protocol> protocols = Sweep.parseProtocols(args[1]);
+        checkOptions(options, "a sweep", protocols.contains(Protocol.DIRECTORY), SWEEP_OPTIONS);
+        List<Integer> cacheSizes = Sweep.parseValues(args[3]);
+        List<Integer> associativities = Sweep.parseValues(args[4]);
+        List<Integer> blockSizes = Sweep.parseValues(args[5]);
+        int numCores = getNumCores(args[2], options);
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (options.containsKey("threads")) {
+            threads = Integer.parseInt(options.get("threads"));
+        }
+
+        DecodedTrace.Storage storage = DecodedTrace.Storage.HEAP;
+        if (options.containsKey("trace-storage")) {
+            storage = DecodedTrace.Storage.valueOf(options.get("trace-storage").toUpperCase().replace('-', '_'));
+        }
+        DecodedTrace trace = new DecodedTrace(args[2], numCores, storage);
+
+        Sweep sweep = new Sweep(protocols, trace, cacheSizes, associativities, blockSizes,
+                isEventDriven);
+        sweep.setBanks(getOption(options, "banks", 1));
+        sweep.setDirectory(getOption(options, "directory-pointers", 0),
+                getOption(options, "directory-latency", Directory.DEFAULT_MESSAGE_LATENCY));
+        int maxOutstanding = options.containsKey("split-bus") || options.containsKey("split-bus-compare")
+                ? getOption(options, "split-bus", Bus.DEFAULT_OUTSTANDING) : 0;
+        try {
+            if (options.containsKey("split-bus-compare")) {
+                List<SimulationResult> atomic = sweep.run(threads);
+                sweep.setSplitTransactions(maxOutstanding);
+                Sweep.printComparison(atomic, sweep.run(threads), System.out);
+            } else {
+                sweep.setSplitTransactions(maxOutstanding);
+                Sweep.printResults(sweep.run(threads), System.out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runStackAnalysis(String[] args, Hashtable<String, String> options) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: stack input_file cache_sizes associativities block_sizes");
+            System.exit(1);
+        }
+        checkOptions(options, "a stack analysis", false, "cores", "threads");
+        int numCores = getNumCores(args[1], options);
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (options.containsKey("threads")) {
+            threads = Integer.parseInt(options.get("threads"));
+        }
+        StackAnalysis analysis = new StackAnalysis(args[1], numCores, Sweep.parseValues(args[2]),
+                Sweep.parseValues(args[3]), Sweep.parseValues(args[4]));
+        try {
+            analysis.run(threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        analysis.printResults(System.out);
+    }
+
+    private static void runConvert(String[] args, Hashtable<String, String> options) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: convert input_file [output_file]");
+            System.exit(1);
+        }
+        checkOptions(options, "convert", false, "cores");
+        String output = args.length > 2 ? args[2] : args[1];
+        int numCores = getNumCores(args[1], options);
+        long textBytes = 0;
+        long binaryBytes = 0;
+        for (int core = 0; core < numCores; core++) {
+            String textFile = Instruction.getTraceFileName(args[1], core);
+            String binaryFile = Instruction.getBinaryTraceFileName(output, core);
+            TraceReader reader = new TraceReader(textFile);
+            BinaryTraceWriter writer = new BinaryTraceWriter(binaryFile, core);
+            while (reader.readLine()) {
+                writer.write(reader.getType(), reader.getAddress());
+            }
+            writer.close();
+            reader.close();
+
+            long textSize = new File(textFile).length();
+            long binarySize = new File(binaryFile).length();
+            System.out.printf("%s: %d bytes -> %s: %d bytes (%.1fx)%n", textFile, textSize, binaryFile, binarySize,
+                    (double)textSize / binarySize);
+            textBytes += textSize;
+            binaryBytes += binarySize;
+        }
+        System.out.printf("Total: %d bytes -> %d bytes (%.1fx)%n", textBytes, binaryBytes, (double)textBytes / binaryBytes);
+    }
+
+    private static void runPack(String[] args, Hashtable<String, String> options) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: pack input_file [output_file]");
+            System.exit(1);
+        }
+        checkOptions(options, "pack", false, "cores");
+        String output = Instruction.getPackFileName(args.length > 2 ? args[2] : args[1]);
+        int numCores = getNumCores(args[1], options);
+        List<String> traces = new ArrayList<>();
+        long traceBytes = 0;
+        for (int core = 0; core < numCores; core++) {
+            traces.add(Instruction.findTraceFile(args[1], core));
+            traceBytes += new File(traces.get(core)).length();
+        }
+        TracePack.write(output, traces);
+        long packBytes = new File(output).length();
+        System.out.printf("%d traces: %d bytes -> %s: %d bytes (%.1fx)%n", numCores, traceBytes, output, packBytes,
+                (double)traceBytes / packBytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException if an option is unknown, has no effect on `mode` (the options it takes are
+     * `allowed`), or is for the directory and there is none
+     */
+    private static void checkOptions(Hashtable<String, String> options, String mode, boolean hasDirectory,
+                                     String... allowed) {
+        List<String> known = Arrays.asList(OPTIONS);
+        List<String> taken = Arrays.asList(allowed);
+        for (String option : options.keySet()) {
+            if (!known.contains(option)) {
+                throw new IllegalArgumentException("Unknown option --" + option + ".");
+            }
+            boolean isDirectoryOption = option.startsWith("directory-");
+            if (!taken.contains(option) && !isDirectoryOption) {
+                throw new IllegalArgumentException("--" + option + " has no effect on " + mode + ".");
+            }
+            if (isDirectoryOption && !hasDirectory) {
+                throw new IllegalArgumentException("--" + option + " only has an effect on the DIRECTORY protocol.");
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if an option is given without the one it goes with
+     */
+    private static void checkDependencies(Hashtable<String, String> options) {
+        for (String[] dependency : DEPENDENCIES) {
+            if (!options.containsKey(dependency[0])) {
+                continue;
+            }
+            boolean hasValue = dependency[2].isEmpty() || (options.containsKey(dependency[1])
+                    && !options.get(dependency[1]).isEmpty());
+            if (!options.containsKey(dependency[1]) || !hasValue) {
+                throw new IllegalArgumentException("--" + dependency[0] + " needs --" + dependency[1]
+                        + (dependency[2].isEmpty() ? "" : "=" + dependency[2]) + ".");
+            }
+        }
+    }
+
+    private static int getOption(Hashtable<String, String> options, String option, int defaultValue) {
+        return options.containsKey(option) && !options.get(option).isEmpty()
+                ? Integer.parseInt(options.get(option)) : defaultValue;
+    }
+
+    private static long getLongOption(Hashtable<String, String> options, String option, long defaultValue) {
+        return options.containsKey(option) ? Long.parseLong(options.get(option)) : defaultValue;
+    }
+
+    /**
+     * @return the number of cores given with --cores, or else the number of trace files for the input
+     * @throws IllegalArgumentException if the input is a pack that cannot be read
+     */
+    private static int getNumCores(String trace, Hashtable<String, String> options) {
+        int numCores;
+        if (options.containsKey("cores")) {
+            numCores = Integer.parseInt(options.get("cores"));
+        } else {
+            try {
+                numCores = Instruction.countTraceFiles(trace);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        if (numCores < 1) {
+            System.out.println("No trace files found for " + trace + ".");
+            System.exit(1);
+        }
+        if (numCores > SnoopFilter.MAX_CORES) {
+            // the caches holding a block are a bit mask in a long (see SnoopFilter and Directory)
+            System.out.println("At most " + SnoopFilter.MAX_CORES + " cores are supported, not " + numCores + ".");
+            System.exit(1);
+        }
+        return numCores;
+    }
+}
@@ -0,0 +1,209 @@
+package cachesim;
+
+/**
+ * Reads another TraceSource ahead of the simulation on a thread of its own.
+ *
+ * The producer thread decodes lines into a bounded ring of packed instructions (Instruction.pack()), and readLine() only
+ * has to take the next one out, so parsing (and waiting on the disk) overlaps with simulating. There is one producer and
+ * one consumer per ring, so it needs no locks: each side only ever writes its own index, and publishes it with lazySet.
+ *
+ * Both sides count how often, and for how long, they had to wait on the other: a ring that is often full means the
+ * simulation is the bottleneck, a ring that is often empty means the reader is.
+ */
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class PrefetchingTraceSource implements TraceSource {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    // how long the producer sleeps for when the ring is full (the consumer never sleeps, it only yields)
+    private static final long PRODUCER_PARK_NANOS = 50000;
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    private final TraceSource source;
+    private final long[] ring;
+    private final int mask;
+
+    // next record the consumer will read, and the next record the producer will write
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile boolean isFinished;
+    private volatile boolean isClosed;
+    private volatile RuntimeException failure;
+
+    // consumer side only
+    private long consumerHead;
+    private long cachedTail;
+    private int type;
+    private int address;
+    public long consumerStalls;
+    public long consumerWaitNanos;
+
+    // producer side only (read by the consumer once the producer is finished)
+    private long producerTail;
+    private long cachedHead;
+    public volatile long producerStalls;
+    public volatile long producerWaitNanos;
+
+    /**
+     * @param source the trace to read ahead of the simulation, it is only ever read from the producer thread
+     * @param capacity the number of lines to read ahead at most, rounded up to a power of two
+     * @param name the name of the producer thread
+     */
+    public PrefetchingTraceSource(TraceSource source, int capacity, String name) {
+        this.source = source;
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        ring = new long[size];
+        mask = size - 1;
+        Thread producer = new Thread(this::produce, name);
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    private void produce() {
+        try {
+            while (!isClosed && source.readLine()) {
+                if (producerTail - cachedHead == ring.length) {
+                    cachedHead = head.get();
+                    if (producerTail - cachedHead == ring.length && !waitForSpace()) {
+                        break;
+                    }
+                }
+                ring[(int)producerTail & mask] = Instruction.pack(source.getType(), source.getAddress());
+                producerTail += 1;
+                tail.lazySet(producerTail);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            isFinished = true;
+            if (isClosed) {
+                closeSource();
+            }
+        }
+    }
+
+    /**
+     * @return false if the consumer closed the ring while we were waiting
+     */
+    private boolean waitForSpace() {
+        long start = System.nanoTime();
+        int spins = 0;
+        while (producerTail - (cachedHead = head.get()) == ring.length) {
+            if (isClosed) {
+                return false;
+            }
+            if (spins < SPINS_BEFORE_PARKING) {
+                spins += 1;
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+            }
+        }
+        producerStalls += 1;
+        producerWaitNanos += System.nanoTime() - start;
+        return true;
+    }
+
+    @Override
+    public boolean readLine() {
+        if (consumerHead == cachedTail) {
+            cachedTail = tail.get();
+            if (consumerHead == cachedTail && !waitForLine()) {
+                return false;
+            }
+        }
+        long instruction = ring[(int)consumerHead & mask];
+        consumerHead += 1;
+        head.lazySet(consumerHead);
+        type = Instruction.getType(instruction);
+        address = Instruction.getAddress(instruction);
+        return true;
+    }
+
+    /**
+     * @return false if the producer has finished without adding anything else to the ring
+     */
+    private boolean waitForLine() {
+        long start = System.nanoTime();
+        boolean hasLine = true;
+        while (consumerHead == (cachedTail = tail.get())) {
+            if (isFinished) {
+                // the producer publishes its last line before it finishes
+                cachedTail = tail.get();
+                if (consumerHead == cachedTail) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    hasLine = false;
+                }
+                break;
+            }
+            Thread.yield();
+        }
+        // running out of trace is not a stall
+        if (hasLine) {
+            consumerStalls += 1;
+            consumerWaitNanos += System.nanoTime() - start;
+        }
+        return hasLine;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the progress of the reading thread, which is a little ahead (read without synchronizing, so only an
+     * estimate)
+     */
+    @Override
+    public double getProgress() {
+        return source.getProgress();
+    }
+
+    /**
+     * Stop reading ahead, the source is closed by whichever thread gets to it last
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        if (isFinished) {
+            closeSource();
+        }
+    }
+
+    private void closeSource() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            // nothing more will be read from it anyway
+        }
+    }
+
+    /**
+     * @return the number of lines read ahead that the consumer has yet to read
+     */
+    public long getBufferedLines() {
+        return tail.get() - head.get();
+    }
+
+    /**
+     * Print how often each side had to wait for the other, and which of the two is the bottleneck
+     */
+    public void printStats(String name, PrintStream out) {
+        out.printf("%s: read ahead %d of %d lines, ring full %d times (%.1f ms), empty %d times (%.1f ms), %s%n",
+                name, getBufferedLines(), ring.length, producerStalls, producerWaitNanos / 1e6, consumerStalls,
+                consumerWaitNanos / 1e6, consumerWaitNanos > producerWaitNanos
+                        ? "the reader is the bottleneck" : "the simulation is the bottleneck");
+    }
+}
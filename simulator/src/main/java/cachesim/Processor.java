@@ -0,0 +1,267 @@
+package cachesim;
+
+/**
+ * Created by Eric on 15/11/2016.
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+public class Processor {
+
+    Cache cache;
+    Protocol protocol;
+    Instruction instruction;
+    boolean isDone = false;
+    long currentCycle = 0;
+    // the cycle the processor ran out of instructions at (the clock keeps going for it after that)
+    long finalCycle = 0;
+    CacheResults cacheResults;
+    int currentInstruction;
+    int currentAddress;
+    // the number of instructions run so far (every single NOP counted)
+    long instructions = 0;
+    // the cycles each stall took, from the miss until the bus delivered the block, by Transaction.ordinal()
+    LatencyHistogram[] stallCycles;
+    boolean isStallTimed = false;
+    long stallStart = 0;
+    PrintStream out;
+
+    /**
+     * @param buses the banks of the interconnect
+     */
+    public Processor (int cacheSize, int blockSize, int associativity, Protocol proto, Bus[] buses, Instruction instr, int cacheCoreNumber,
+                      PrintStream out) {
+        cache = new Cache(cacheSize, associativity, blockSize, proto, buses, cacheCoreNumber, out);
+        this.out = out;
+        protocol = proto;
+        instruction = instr;
+        stallCycles = new LatencyHistogram[Transaction.values().length];
+        for (int i = 0; i < stallCycles.length; i++) {
+            stallCycles[i] = new LatencyHistogram();
+        }
+    }
+
+    public void setClock(long clockCycle) {
+        currentCycle = clockCycle;
+    }
+
+    public void getInstruction(int processorNum) {
+        long output = instruction.getInstruction(processorNum);
+        this.currentInstruction = Instruction.getType(output);
+        this.currentAddress = Instruction.getAddress(output);
+        if (output != Instruction.END) {
+            instructions += 1;
+        }
+        //System.out.println("Processor " + processorNum);
+        //System.out.println(currentInstruction + " " + currentAddress);
+    }
+
+    public void executeInstruction(int processorNum) {
+        switch (this.currentInstruction) {
+            case 0:
+                //System.out.println("Processor " + processorNum + " current cycle is " + this.currentCycle + " executing Load");
+                cache.busSnoop(currentCycle);
+                //execute load instruction below
+                cache.readCache(this.currentAddress);
+                startStall();
+                break;
+            case 1:
+                //System.out.println("Processor " + processorNum + " current cycle is " + this.currentCycle + " executing Store");
+                cache.busSnoop(currentCycle);
+                //execute store instruction below
+                cache.writeCache(this.currentAddress);
+                startStall();
+                break;
+            case 2:
+                // do (almost) nothing for NOP instruction
+                cache.busSnoop(currentCycle);
+                //System.out.println("Processor " + processorNum + " current cycle is " + this.currentCycle);
+                break;
+            case -1:
+                this.isDone = true;
+                this.finalCycle = this.currentCycle;
+                printResults(processorNum);
+                cacheResults = cache.getCurrentResults();
+                break;
+            default:
+                out.println("something wrong in executeInstruction function at Processor class");
+                break;
+        }
+    }
+
+    /**
+     * Print what the processor did once it has no more instructions (again after a restore, for the ones that had
+     * finished before the checkpoint). Only its own accesses are printed, which do not change after that.
+     */
+    public void printResults(int processorNum) {
+        out.println("Processor " + processorNum + " has no more instructions");
+        out.println("Processor " + processorNum + "'s final cycle is " + this.finalCycle);
+        // For testing
+        cache.printCacheStats();
+        cache.retrieveCacheResults();
+        out.println();
+    }
+
+    /**
+     * Run the next instruction without any timing, through the functional model (see FunctionalModel). A run of NOPs
+     * is gone through at once, up to `maxSteps` of them.
+     * @return the number of instructions run
+     */
+    public int executeFunctional(int processorNum, FunctionalModel model, int maxSteps) {
+        getInstruction(processorNum);
+        if (currentInstruction == -1) {
+            executeInstruction(processorNum);
+            return 1;
+        }
+        if (currentInstruction == 2) {
+            int nops = Math.min(instruction.getNopsLeft(processorNum), maxSteps - 1);
+            instruction.skipNops(processorNum, nops);
+            instructions += nops;
+            return nops + 1;
+        }
+        model.access(processorNum, currentInstruction, currentAddress);
+        return 1;
+    }
+
+    /**
+     * Write the state of the processor and its cache (see Checkpoint)
+     */
+    public void writeState(Checkpoint checkpoint) throws IOException {
+        DataOutputStream out = checkpoint.getOutput();
+        out.writeBoolean(isDone);
+        out.writeLong(currentCycle);
+        out.writeLong(finalCycle);
+        out.writeInt(currentInstruction);
+        out.writeInt(currentAddress);
+        out.writeLong(instructions);
+        out.writeBoolean(isStallTimed);
+        out.writeLong(stallStart);
+        for (LatencyHistogram histogram : stallCycles) {
+            histogram.writeState(out);
+        }
+        // the results are kept from when the processor finished, its cache can still change after that
+        out.writeBoolean(cacheResults != null);
+        if (cacheResults != null) {
+            for (long result : new long[] {cacheResults.traffic, cacheResults.update, cacheResults.privateData,
+                    cacheResults.sharedData, cacheResults.misses, cacheResults.hitSelf, cacheResults.hitOther, cacheResults.hitMemory}) {
+                out.writeLong(result);
+            }
+        }
+        cache.writeState(checkpoint);
+    }
+
+    public void readState(Checkpoint checkpoint) throws IOException {
+        DataInputStream in = checkpoint.getInput();
+        isDone = in.readBoolean();
+        currentCycle = in.readLong();
+        finalCycle = in.readLong();
+        currentInstruction = in.readInt();
+        currentAddress = in.readInt();
+        instructions = in.readLong();
+        isStallTimed = in.readBoolean();
+        stallStart = in.readLong();
+        for (LatencyHistogram histogram : stallCycles) {
+            histogram.readState(in);
+        }
+        cacheResults = null;
+        if (in.readBoolean()) {
+            cacheResults = new CacheResults();
+            cacheResults.traffic = in.readLong();
+            cacheResults.update = in.readLong();
+            cacheResults.privateData = in.readLong();
+            cacheResults.sharedData = in.readLong();
+            cacheResults.misses = in.readLong();
+            cacheResults.hitSelf = in.readLong();
+            cacheResults.hitOther = in.readLong();
+            cacheResults.hitMemory = in.readLong();
+        }
+        cache.readState(checkpoint);
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public long getInstructionCount() {
+        return instructions;
+    }
+
+    public long getFinalCycle() {
+        return finalCycle;
+    }
+
+    public CacheResults getCacheResults() {
+        return cacheResults;
+    }
+
+    public boolean isProcDone() {
+        return this.isDone;
+    }
+
+    public boolean isProcStalled() {
+        return cache.isCacheStalled();
+    }
+
+    public void cacheBusSnoop() {
+        cache.busSnoop(currentCycle);
+        if (isStallTimed && !cache.isCacheStalled()) {
+            stallCycles[cache.getStallTransaction().ordinal()].record(currentCycle - stallStart);
+            isStallTimed = false;
+        }
+    }
+
+    private void startStall() {
+        if (cache.isCacheStalled()) {
+            isStallTimed = true;
+            stallStart = currentCycle;
+        }
+    }
+
+    /**
+     * @return the histogram of the cycles spent stalled on a transaction
+     */
+    public LatencyHistogram getStallCycles(Transaction transaction) {
+        return stallCycles[transaction.ordinal()];
+    }
+
+    /**
+     * @return all the cycles spent stalled up to a cycle, including a stall still going on then
+     */
+    public long getStalledCycles(long cycle) {
+        long cycles = isStallTimed ? cycle - stallStart : 0;
+        for (LatencyHistogram histogram : stallCycles) {
+            cycles += histogram.getTotal();
+        }
+        return cycles;
+    }
+
+    /**
+     * @return the number of cycles from now in which this processor would not change anything, as long as nothing else
+     * does either (it is stalled, done or running through NOPs, and its cache has nothing to do on the bus)
+     */
+    public int getIdleCycles(int processorNum) {
+        if (!cache.isSnoopIdle()) {
+            return 0;
+        }
+        if (isDone || isProcStalled()) {
+            return Integer.MAX_VALUE;
+        }
+        return instruction.getNopsLeft(processorNum);
+    }
+
+    /**
+     * Fast forward through cycles in which nothing happens, must not be more than getIdleCycles()
+     */
+    public void skipCycles(int processorNum, int cycles) {
+        if (!isDone && !isProcStalled()) {
+            instruction.skipNops(processorNum, cycles);
+            instructions += cycles;
+            this.currentInstruction = 2;
+            this.currentAddress = instruction.getNopsLeft(processorNum);
+        }
+        currentCycle += cycles;
+    }
+}
@@ -0,0 +1,84 @@
+package cachesim;
+
+/**
+ * Prints how far a simulation has got every few seconds: simulated cycles per second, instructions run by each core,
+ * how much of the trace has been read (with an estimate of the time left), and what the bus and cores are doing.
+ *
+ * The simulation only looks at the clock every CHECK_INTERVAL steps of its loop (see Simulation.setProgressReporter()),
+ * and with no reporter it does not even count them, so the cost per cycle is a single branch.
+ */
+
+import java.io.PrintStream;
+
+public class ProgressReporter {
+
+    // steps of the simulation loop between looks at the clock
+    public static final int CHECK_INTERVAL = 1 << 16;
+
+    private long intervalNanos;
+    private PrintStream out;
+    private long startNanos;
+    private long lastNanos;
+    private long lastCycle;
+    private long nextReportNanos;
+
+    /**
+     * @param seconds the time between reports
+     */
+    public ProgressReporter(double seconds, PrintStream out) {
+        this.intervalNanos = (long)(seconds * 1e9);
+        this.out = out;
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+        lastCycle = 0;
+        nextReportNanos = startNanos + intervalNanos;
+    }
+
+    public boolean isDue() {
+        return System.nanoTime() >= nextReportNanos;
+    }
+
+    /**
+     * @param instructions the instructions run so far by each core (every single NOP counted)
+     * @param traceProgress how much of the trace has been read, from 0 to 1, or -1 if not known
+     * @param queueLength the number of operations waiting to go on the bus
+     * @param stalledCores the number of cores waiting on the bus
+     */
+    public void report(long cycle, long[] instructions, double traceProgress, int queueLength, int stalledCores) {
+        long now = System.nanoTime();
+        double elapsed = (now - startNanos) / 1e9;
+        double cyclesPerSecond = (cycle - lastCycle) / Math.max((now - lastNanos) / 1e9, 1e-9);
+        lastNanos = now;
+        lastCycle = cycle;
+        nextReportNanos = now + intervalNanos;
+
+        StringBuilder cores = new StringBuilder();
+        for (long coreInstructions : instructions) {
+            cores.append(cores.length() == 0 ? "" : " ").append(formatCount(coreInstructions));
+        }
+        String trace = "trace read: unknown";
+        if (traceProgress > 0) {
+            double left = elapsed * (1 - traceProgress) / traceProgress;
+            trace = String.format("trace read: %.1f%%, ETA %s", 100 * traceProgress, formatTime(left));
+        }
+        out.printf("[%s] cycle %d (%s cycles/s), instructions per core: %s, %s, bus queue: %d, stalled cores: %d/%d%n",
+                formatTime(elapsed), cycle, formatCount((long)cyclesPerSecond), cores, trace, queueLength,
+                stalledCores, instructions.length);
+    }
+
+    private static String formatCount(long count) {
+        if (count >= 1000000000L) {
+            return String.format("%.2fG", count / 1e9);
+        } else if (count >= 1000000) {
+            return String.format("%.2fM", count / 1e6);
+        } else if (count >= 1000) {
+            return String.format("%.1fk", count / 1e3);
+        }
+        return Long.toString(count);
+    }
+
+    private static String formatTime(double seconds) {
+        long total = Math.round(seconds);
+        return String.format("%d:%02d:%02d", total / 3600, total / 60 % 60, total % 60);
+    }
+}
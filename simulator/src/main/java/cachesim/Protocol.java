@@ -0,0 +1,12 @@
+package cachesim;
+
+/**
+ * Encode which protocol we are using.
+ */
+public enum Protocol {
+    MSI,
+    MESI,
+    DRAGON,
+    // MESI with a directory at memory instead of snooping (see Directory)
+    DIRECTORY;
+}
@@ -0,0 +1,221 @@
+package cachesim;
+
+/**
+ * The settings and results of a sampled simulation (see Simulation.runSampled()).
+ *
+ * Every `period` instructions of each core, the last `warmup` + `window` are simulated in detail and everything before
+ * them functionally (see Simulation.runSampled()). Only the windows are measured. As they are placed by instructions,
+ * not cycles, every part of the trace is sampled alike, however much the processors stall in it. The estimate of every result (cycles, traffic...) for the whole trace is its rate per
+ * instruction over all the windows together (a ratio estimator: the sum of the counter over the sum of the instructions,
+ * so that a window with few instructions weighs less than a busy one) times the number of instructions in the trace,
+ * with a 95% confidence interval from how far the windows are off that rate.
+ */
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Sampling {
+
+    // the counters of a sample
+    public static final int CYCLES = 0;
+    public static final int INSTRUCTIONS = 1;
+    public static final int TRAFFIC = 2;
+    public static final int UPDATE = 3;
+    public static final int PRIVATE = 4;
+    public static final int SHARED = 5;
+    public static final int HIT_SELF = 6;
+    public static final int HIT_OTHER = 7;
+    public static final int HIT_MEMORY = 8;
+    public static final int COUNTERS = 9;
+
+    public static final int DEFAULT_PERIOD = 100000;
+    public static final int DEFAULT_WINDOW = 2000;
+    public static final int DEFAULT_WARMUP = 8000;
+
+    // two-sided 95% critical values of Student's t for 1 to 30 degrees of freedom, 1.96 after that
+    private static final double[] T_95 = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    private int period;
+    private int window;
+    private int warmup;
+    private List<long[]> samples;
+    // a window cut short by the end of the trace, only used if there are no full ones
+    private long[] partialSample;
+    private long totalInstructions;
+
+    /**
+     * @param period the number of instructions of every core from the start of one window to the start of the next
+     * @param window the number of instructions of every core measured in detail in every period
+     * @param warmup the number of instructions of every core simulated in detail, but not measured, right before every
+     *               window
+     */
+    public Sampling(int period, int window, int warmup) {
+        if (window < 1 || warmup < 0 || period < window + warmup) {
+            throw new IllegalArgumentException("The sampling period must hold a window (of at least 1 instruction) and "
+                    + "its warm-up");
+        }
+        this.period = period;
+        this.window = window;
+        this.warmup = warmup;
+        samples = new ArrayList<>();
+        partialSample = null;
+    }
+
+    public int getFunctionalInstructions() {
+        return period - window - warmup;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * @param before the counters at the start of the window (see COUNTERS)
+     * @param after the counters at its end
+     * @param isCutShort true if the trace ran out during the window
+     */
+    public void addSample(long[] before, long[] after, boolean isCutShort) {
+        long[] sample = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++) {
+            sample[i] = after[i] - before[i];
+        }
+        if (sample[INSTRUCTIONS] == 0) {
+            return;
+        }
+        if (isCutShort) {
+            partialSample = sample;
+        } else {
+            samples.add(sample);
+        }
+    }
+
+    public void setTotalInstructions(long totalInstructions) {
+        this.totalInstructions = totalInstructions;
+    }
+
+    /**
+     * Print the estimates for the whole trace, in the same terms as Simulation.calculateResults()
+     * @param cacheToCacheCycles the cycles a write takes to get its block from another cache
+     */
+    public void printResults(int cacheToCacheCycles, PrintStream out) {
+        List<long[]> used = getUsedSamples();
+        long detailedInstructions = 0;
+        for (long[] sample : used) {
+            detailedInstructions += sample[INSTRUCTIONS];
+        }
+        out.println("Sampled " + used.size() + " windows of " + window + " instructions per core (after " + warmup
+                + " of warm-up) every " + period + " instructions");
+        out.println(String.format("Instructions: %d, %.2f%% of them measured", totalInstructions,
+                100.0 * detailedInstructions / Math.max(totalInstructions, 1)));
+        if (used.isEmpty()) {
+            out.println("No instructions were measured, the trace is too short for the sampling period.");
+            return;
+        }
+        out.println("Estimates with 95% confidence intervals:");
+        out.println("Simulated cycles: " + format(estimate(CYCLES)));
+        out.println("Total amount of data traffic (bytes):  " + format(estimate(TRAFFIC)));
+        out.println("Total number of invalidations/updates: " + format(estimate(UPDATE)));
+        out.println("Private data accesses(self): " + format(estimate(PRIVATE)));
+        out.println("Shared data accesses(self):  " + format(estimate(SHARED)));
+        out.println("Average latency (number of clock cycles): " + format(estimateLatency(cacheToCacheCycles)));
+    }
+
+    /**
+     * @return the full windows, or else the one cut short if there is one
+     */
+    private List<long[]> getUsedSamples() {
+        if (samples.isEmpty() && partialSample != null) {
+            List<long[]> used = new ArrayList<>();
+            used.add(partialSample);
+            return used;
+        }
+        return samples;
+    }
+
+    /**
+     * @return the rate per instruction of a counter over all the windows, scaled up to the whole trace, and the half
+     * width of its 95% confidence interval (NaN with only one window), or null if nothing was measured
+     */
+    public double[] estimate(int counter) {
+        List<long[]> used = getUsedSamples();
+        double[] counts = new double[used.size()];
+        double[] instructions = new double[used.size()];
+        for (int i = 0; i < used.size(); i++) {
+            counts[i] = used.get(i)[counter];
+            instructions[i] = used.get(i)[INSTRUCTIONS];
+        }
+        return estimateRatio(counts, instructions, totalInstructions);
+    }
+
+    /**
+     * @return the same as estimate(), for the average latency of the writes
+     */
+    public double[] estimateLatency(int cacheToCacheCycles) {
+        List<long[]> used = getUsedSamples();
+        double[] latencies = new double[used.size()];
+        double[] writes = new double[used.size()];
+        for (int i = 0; i < used.size(); i++) {
+            long[] sample = used.get(i);
+            latencies[i] = sample[HIT_OTHER] * cacheToCacheCycles + sample[HIT_MEMORY] * 100;
+            writes[i] = sample[HIT_SELF] + sample[HIT_OTHER] + sample[HIT_MEMORY];
+        }
+        return estimateRatio(latencies, writes, 1);
+    }
+
+    /**
+     * The sum of the values over the sum of what they are per, times scale, with the variance of a ratio estimator:
+     * from how far every window's value is off the ratio times its share
+     * @return the estimate and the half width of its 95% confidence interval, or null if there is nothing to go on
+     */
+    private static double[] estimateRatio(double[] values, double[] per, double scale) {
+        int n = 0;
+        double sumValues = 0;
+        double sumPer = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (per[i] > 0) {
+                n += 1;
+                sumValues += values[i];
+                sumPer += per[i];
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        double ratio = sumValues / sumPer;
+        if (n == 1) {
+            return new double[] {ratio * scale, Double.NaN};
+        }
+        double squares = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (per[i] > 0) {
+                double residual = values[i] - ratio * per[i];
+                squares += residual * residual;
+            }
+        }
+        double meanPer = sumPer / n;
+        double variance = squares / (n - 1) / (n * meanPer * meanPer);
+        int degrees = n - 1;
+        double t = degrees <= T_95.length ? T_95[degrees - 1] : 1.96;
+        return new double[] {ratio * scale, t * Math.sqrt(variance) * scale};
+    }
+
+    /**
+     * @return "estimate +/- half width of the 95% confidence interval"
+     */
+    private static String format(double[] estimate) {
+        if (estimate == null) {
+            return "n/a";
+        }
+        if (Double.isNaN(estimate[1])) {
+            return String.format("%.1f (one window, no interval)", estimate[0]);
+        }
+        return String.format("%.1f +/- %.1f", estimate[0], estimate[1]);
+    }
+}
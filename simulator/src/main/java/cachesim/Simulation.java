@@ -0,0 +1,717 @@
+package cachesim;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Vector;
+
+/**
+ * A single run of the simulator, which owns its own trace, bus and processors (so there can be several at once).
+ *
+ * The bus can be split into several banks (see Cache), each with its own queue, arbitration, timing and snoop filter,
+ * that take the blocks of every (number of banks)th set. With the DIRECTORY protocol every bank has a directory (see
+ * Directory) of the blocks it takes.
+ */
+public class Simulation {
+
+    // prints nothing, for when many simulations run at once
+    public static final PrintStream QUIET = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    });
+
+    private Instruction instructions;
+    private Vector<Processor> processors;
+    private Bus[] buses;
+    private int numCores;
+    private int completedCores;
+    private boolean isEventDriven;
+    private Protocol protocol;
+    private int cacheSize;
+    private int associativity;
+    private int blockSize;
+    private long cycles;
+    private long currentCycle;
+    private PrintStream out;
+    // null unless progress is reported
+    private ProgressReporter progress;
+    private int progressCountdown;
+    // null unless the bus is sampled
+    private BusTimeSeries busTimeSeries;
+    private long nextSampleCycle;
+
+    /**
+     * @param instructions the trace to run, one core for each of its per-core traces
+     * @param isEventDriven skip over cycles where nothing happens instead of stepping through every single one
+     * @param out where the progress and results are printed to, see QUIET
+     */
+    public Simulation(Protocol protocol, Instruction instructions, int cacheSize, int associativity, int blockSize,
+                      boolean isEventDriven, PrintStream out) {
+        this(protocol, instructions, cacheSize, associativity, blockSize, isEventDriven, 1, out);
+    }
+
+    /**
+     * @param banks the number of banks of the bus, a power of two and at most the number of sets
+     */
+    public Simulation(Protocol protocol, Instruction instructions, int cacheSize, int associativity, int blockSize,
+                      boolean isEventDriven, int banks, PrintStream out) {
+        if (Integer.bitCount(banks) != 1 || banks > cacheSize / blockSize / associativity) {
+            throw new IllegalArgumentException("The bus can have a power of two from 1 to "
+                    + cacheSize / blockSize / associativity + " banks (one per set).");
+        }
+        this.instructions = instructions;
+        this.numCores = instructions.getNumCores();
+        this.isEventDriven = isEventDriven;
+        this.protocol = protocol;
+        this.cacheSize = cacheSize;
+        this.associativity = associativity;
+        this.blockSize = blockSize;
+        this.out = out;
+        cycles = 0;
+        currentCycle = 0;
+        completedCores = 0;
+        nextSampleCycle = Long.MAX_VALUE;
+        buses = new Bus[banks];
+        for (int bank = 0; bank < banks; bank++) {
+            buses[bank] = new Bus(protocol, blockSize/4, numCores); // blocksize/4 = number of (32bit/4byte)words per block
+        }
+        processors = new Vector<>();
+        Cache[] caches = new Cache[numCores];
+        for (int i = 0; i < numCores; i++) {
+            out.println(i);
+            processors.add(new Processor(cacheSize, blockSize, associativity, protocol, buses, instructions, i, out));
+            caches[i] = processors.elementAt(i).getCache();
+        }
+        for (int bank = 0; bank < banks; bank++) {
+            buses[bank].setCaches(caches, bank);
+        }
+        if (protocol == Protocol.DIRECTORY) {
+            setDirectory(0, Directory.DEFAULT_MESSAGE_LATENCY);
+        }
+    }
+
+    /**
+     * Give every bank of the DIRECTORY protocol a new directory (see Directory), only before running
+     * @param pointers the most sharers a block has pointers for, 0 for a full map
+     * @param messageLatency the cycles a message takes from one node to another
+     */
+    public void setDirectory(int pointers, int messageLatency) {
+        if (protocol != Protocol.DIRECTORY) {
+            return;
+        }
+        for (Bus bus : buses) {
+            bus.setDirectory(new Directory(numCores, blockSize, pointers, messageLatency));
+        }
+    }
+
+    /**
+     * Report progress every so often while running (see ProgressReporter), null to stop
+     */
+    public void setProgressReporter(ProgressReporter progress) {
+        this.progress = progress;
+        progressCountdown = ProgressReporter.CHECK_INTERVAL;
+    }
+
+    /**
+     * Sample the bus every so often while running (see BusTimeSeries), from the current cycle on (so after
+     * restoreCheckpoint()), null to stop
+     */
+    public void setBusTimeSeries(BusTimeSeries busTimeSeries) {
+        this.busTimeSeries = busTimeSeries;
+        nextSampleCycle = Long.MAX_VALUE;
+        if (busTimeSeries != null) {
+            busTimeSeries.start(currentCycle, getBusyCycles(), getStalledCycles());
+            nextSampleCycle = busTimeSeries.getNextSampleCycle(currentCycle);
+        }
+    }
+
+    /**
+     * Change how the bus picks the next operation to go on it (see BusQueue), only before running
+     */
+    public void setArbitration(BusQueue.Arbitration arbitration) {
+        for (Bus bus : buses) {
+            bus.setArbitration(arbitration);
+        }
+    }
+
+    /**
+     * Split the memory accesses on the bus into a request and a response phase, with up to `maxOutstanding` of them at
+     * once (see Bus.setSplitTransactions()), only before running. For the DIRECTORY protocol it is the requests waiting
+     * on the directory instead (see Bus.setDirectory()).
+     */
+    public void setSplitTransactions(int maxOutstanding) {
+        for (Bus bus : buses) {
+            bus.setSplitTransactions(maxOutstanding);
+        }
+    }
+
+    private boolean isAllComplete() {
+        return completedCores == numCores;
+    }
+
+    /**
+     * Run the simulation until every processor is out of instructions.
+     */
+    public void runProcessors() {
+        runDetailed(Long.MAX_VALUE, false);
+        cycles = currentCycle;
+    }
+
+    /**
+     * Run the simulation until every processor is out of instructions, saving a checkpoint (see Checkpoint) at the
+     * start of cycle `checkpointAt` and/or every `checkpointEvery` cycles, each replacing the one before.
+     * @param checkpointAt -1 for none
+     * @param checkpointEvery 0 for none
+     */
+    public void runProcessors(String checkpointFile, long checkpointAt, long checkpointEvery) throws IOException {
+        while (!isAllComplete()) {
+            long nextCheckpoint = Long.MAX_VALUE;
+            if (checkpointAt > currentCycle) {
+                nextCheckpoint = checkpointAt;
+            }
+            if (checkpointEvery > 0) {
+                nextCheckpoint = Math.min(nextCheckpoint, (currentCycle / checkpointEvery + 1) * checkpointEvery);
+            }
+            runDetailed(nextCheckpoint, false);
+            if (!isAllComplete()) {
+                saveCheckpoint(checkpointFile);
+                out.println("Checkpoint at cycle " + currentCycle + " saved to " + checkpointFile);
+            }
+        }
+        cycles = currentCycle;
+    }
+
+    /**
+     * Save the full state of the simulation (at the start of the current cycle) to a file, so that it can be resumed
+     * from there with restoreCheckpoint(). The file is only replaced once the new checkpoint is complete.
+     */
+    public void saveCheckpoint(String fileName) throws IOException {
+        Path file = Paths.get(fileName).toAbsolutePath();
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        Checkpoint checkpoint = Checkpoint.create(partial.toString(), protocol, cacheSize, associativity, blockSize,
+                numCores);
+        DataOutputStream stream = checkpoint.getOutput();
+        stream.writeLong(currentCycle);
+        stream.writeInt(completedCores);
+        instructions.writeState(checkpoint);
+        stream.writeInt(buses.length);
+        for (Bus bus : buses) {
+            bus.writeState(checkpoint);
+        }
+        for (int i = 0; i < numCores; i++) {
+            processors.elementAt(i).writeState(checkpoint);
+        }
+        checkpoint.close();
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Pick up from a checkpoint of a simulation with the same configuration and trace. Must be called before the
+     * simulation is run.
+     */
+    public void restoreCheckpoint(String fileName) throws IOException {
+        Checkpoint checkpoint = Checkpoint.open(fileName, protocol, cacheSize, associativity, blockSize, numCores);
+        try {
+            DataInputStream stream = checkpoint.getInput();
+            currentCycle = stream.readLong();
+            completedCores = stream.readInt();
+            instructions.readState(checkpoint);
+            int banks = stream.readInt();
+            if (banks != buses.length) {
+                throw new IOException(fileName + " is a checkpoint of a bus with " + banks + " banks");
+            }
+            for (Bus bus : buses) {
+                bus.readState(checkpoint);
+            }
+            for (int i = 0; i < numCores; i++) {
+                processors.elementAt(i).readState(checkpoint);
+            }
+        } finally {
+            checkpoint.close();
+        }
+        printFinishedCores();
+    }
+
+    /**
+     * Print the processors that had already finished when the checkpoint was made, in the order they finished in, as
+     * the run that made it did
+     */
+    private void printFinishedCores() {
+        Vector<Integer> finished = new Vector<>();
+        for (int i = 0; i < numCores; i++) {
+            if (processors.elementAt(i).isProcDone()) {
+                finished.add(i);
+            }
+        }
+        // the sort is stable, so cores that finished in the same cycle stay in order
+        finished.sort(Comparator.comparingLong(i -> processors.elementAt(i).getFinalCycle()));
+        for (int i : finished) {
+            processors.elementAt(i).printResults(i);
+        }
+    }
+
+    /**
+     * Run the trace in periods of a functional phase (no timing, see FunctionalModel) that keeps the caches warm, then a
+     * detailed warm-up and then a detailed window that is measured, until every processor is out of instructions.
+     * Only the windows count towards the results, see Sampling. Each phase is a number of instructions for every core
+     * that still has any, so that the windows are spread evenly over the instructions of the trace, however long the
+     * processors stall in them.
+     */
+    public void runSampled(Sampling sampling) {
+        Cache[] caches = new Cache[numCores];
+        for (int i = 0; i < numCores; i++) {
+            caches[i] = processors.elementAt(i).getCache();
+        }
+        FunctionalModel model = new FunctionalModel(buses, caches);
+        while (!isAllComplete()) {
+            runFunctional(model, sampling.getFunctionalInstructions());
+            runInstructions(sampling.getWarmup());
+            long[] before = getCounters();
+            runInstructions(sampling.getWindow());
+            sampling.addSample(before, getCounters(), isAllComplete());
+            // the functional model needs a bus with nothing on it, so let whatever is on it finish first
+            runDetailed(Long.MAX_VALUE, true);
+        }
+        cycles = currentCycle;
+        sampling.setTotalInstructions(getCounters()[Sampling.INSTRUCTIONS]);
+    }
+
+    /**
+     * Run in detail until the processors have executed `instructions` more instructions each (counted together, for the
+     * ones that still have any), or are out of them
+     */
+    private void runInstructions(int instructions) {
+        long endInstructions = getInstructionCount() + (long)instructions * (numCores - completedCores);
+        runDetailed(Long.MAX_VALUE, endInstructions, false);
+    }
+
+    private void runDetailed(long endCycle, boolean isDraining) {
+        runDetailed(endCycle, Long.MAX_VALUE, isDraining);
+    }
+
+    /**
+     * Run through the cycles, one by one or skipping over the ones where nothing happens, until every processor is out
+     * of instructions or endCycle is reached.
+     * @param endInstructions or until the processors have executed this many instructions in all
+     * @param isDraining instead, only let the processors that are stalled go on, until nothing is left on the bus
+     */
+    private void runDetailed(long endCycle, long endInstructions, boolean isDraining) {
+        while(!isAllComplete() && currentCycle < endCycle && !(isDraining && isQuiescent())) {
+            long instructionsLeft = Long.MAX_VALUE;
+            if (endInstructions != Long.MAX_VALUE) {
+                instructionsLeft = endInstructions - getInstructionCount();
+                if (instructionsLeft <= 0) {
+                    break;
+                }
+            }
+            if (progress != null && --progressCountdown == 0) {
+                checkProgress();
+            }
+            if (currentCycle >= nextSampleCycle) {
+                sampleBus();
+            }
+            // jump straight over cycles where everything is waiting on the bus or running NOPs (but not past a sample,
+            // or past the instructions to run, as every core running NOPs executes one a cycle)
+            if (isEventDriven && !isDraining) {
+                int idleCycles = (int)Math.min(Math.min(getIdleCycles(currentCycle), instructionsLeft),
+                        Math.min(endCycle, nextSampleCycle) - currentCycle);
+                if (idleCycles > 0) {
+                    for (int i = 0; i < numCores; i++) {
+                        processors.elementAt(i).skipCycles(i, idleCycles);
+                    }
+                    for (Bus bus : buses) {
+                        bus.countCycles(idleCycles);
+                    }
+                    currentCycle += idleCycles;
+                    continue;
+                }
+            }
+            for (Bus bus : buses) {
+                bus.setClock(currentCycle);
+            }
+            for (int i = 0; i < numCores; i++) {
+                processors.elementAt(i).setClock(currentCycle);
+                for (Bus bus : buses) {
+                    bus.deliverSnoop(i);
+                }
+                // need to do things for when instructions are complete OR when processor is stalled
+                if (processors.elementAt(i).isProcDone() || processors.elementAt(i).isProcStalled() || isDraining) {
+                    processors.elementAt(i).cacheBusSnoop();
+                    continue;
+                }
+                processors.elementAt(i).getInstruction(i);
+                processors.elementAt(i).executeInstruction(i);
+                if (processors.elementAt(i).isProcDone()) {
+                    completedCores += 1;
+                }
+            }
+            for (Bus bus : buses) {
+                bus.runBusTransactions(currentCycle);
+            }
+            currentCycle += 1;
+        }
+    }
+
+    /**
+     * Run every processor for a number of steps of one instruction each, without any timing. The processors take their
+     * steps in lockstep, except that NOPs are skipped over.
+     */
+    private void runFunctional(FunctionalModel model, int steps) {
+        // the step each processor is at
+        int[] nextSteps = new int[numCores];
+        int step = 0;
+        while (step < steps && !isAllComplete()) {
+            if (progress != null && --progressCountdown == 0) {
+                checkProgress();
+            }
+            int next = steps;
+            for (int i = 0; i < numCores; i++) {
+                if (processors.elementAt(i).isProcDone()) {
+                    continue;
+                }
+                if (nextSteps[i] == step) {
+                    nextSteps[i] += processors.elementAt(i).executeFunctional(i, model, steps - step);
+                    if (processors.elementAt(i).isProcDone()) {
+                        completedCores += 1;
+                    }
+                }
+                next = Math.min(next, nextSteps[i]);
+            }
+            step = next;
+        }
+    }
+
+    /**
+     * Report progress if it is time to
+     */
+    private void checkProgress() {
+        progressCountdown = ProgressReporter.CHECK_INTERVAL;
+        if (!progress.isDue()) {
+            return;
+        }
+        long[] coreInstructions = new long[numCores];
+        int stalledCores = 0;
+        for (int i = 0; i < numCores; i++) {
+            coreInstructions[i] = processors.elementAt(i).getInstructionCount();
+            if (processors.elementAt(i).isProcStalled()) {
+                stalledCores += 1;
+            }
+        }
+        progress.report(currentCycle, coreInstructions, instructions.getProgress(), getQueueLength(), stalledCores);
+    }
+
+    private void sampleBus() {
+        busTimeSeries.sample(currentCycle, getBusyCycles(), getQueueLength(), getStalledCycles());
+        nextSampleCycle = busTimeSeries.getNextSampleCycle(currentCycle);
+    }
+
+    /**
+     * @return the busy cycles of all banks of the bus added up
+     */
+    private long getBusyCycles() {
+        long busyCycles = 0;
+        for (Bus bus : buses) {
+            busyCycles += bus.getBusyCycles();
+        }
+        return busyCycles;
+    }
+
+    /**
+     * @return the operations waiting to go on all banks of the bus
+     */
+    private int getQueueLength() {
+        int queueLength = 0;
+        for (Bus bus : buses) {
+            queueLength += bus.getQueueLength();
+        }
+        return queueLength;
+    }
+
+    /**
+     * @return all the cycles each processor has spent stalled so far
+     */
+    private long[] getStalledCycles() {
+        long[] stalledCycles = new long[numCores];
+        for (int i = 0; i < numCores; i++) {
+            stalledCycles[i] = processors.elementAt(i).getStalledCycles(currentCycle);
+        }
+        return stalledCycles;
+    }
+
+    /**
+     * @return true if nothing is on (or waiting to go on) the bus
+     */
+    private boolean isQuiescent() {
+        for (Bus bus : buses) {
+            if (!bus.isIdle()) {
+                return false;
+            }
+        }
+        for (int i = 0; i < numCores; i++) {
+            if (!processors.elementAt(i).getCache().isQuiet()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the counters of all caches added up so far, along with the cycle and number of instructions (indexed as
+     * in Sampling)
+     */
+    private long getInstructionCount() {
+        long instructions = 0;
+        for (int i = 0; i < numCores; i++) {
+            instructions += processors.elementAt(i).getInstructionCount();
+        }
+        return instructions;
+    }
+
+    private long[] getCounters() {
+        long[] counters = new long[Sampling.COUNTERS];
+        counters[Sampling.CYCLES] = currentCycle;
+        for (int i = 0; i < numCores; i++) {
+            CacheResults results = processors.elementAt(i).getCache().getCurrentResults();
+            counters[Sampling.INSTRUCTIONS] += processors.elementAt(i).getInstructionCount();
+            counters[Sampling.TRAFFIC] += results.traffic;
+            counters[Sampling.UPDATE] += results.update;
+            counters[Sampling.PRIVATE] += results.privateData;
+            counters[Sampling.SHARED] += results.sharedData;
+            counters[Sampling.HIT_SELF] += results.hitSelf;
+            counters[Sampling.HIT_OTHER] += results.hitOther;
+            counters[Sampling.HIT_MEMORY] += results.hitMemory;
+        }
+        return counters;
+    }
+
+    /**
+     * @return the cycles a write takes to get its block from another cache (from main memory it is always 100)
+     */
+    public int getCacheToCacheCycles() {
+        if (protocol == Protocol.DIRECTORY) {
+            return buses[0].directory.getCacheToCacheCycles();
+        } else if (protocol == Protocol.MSI || protocol == Protocol.MESI) {
+            return buses[0].cycles_block;
+        }
+        return Bus.CYCLES_WORD;
+    }
+
+    /**
+     * @return the results of the cache of `core` (after runProcessors())
+     */
+    public CacheResults getCacheResults(int core) {
+        return processors.elementAt(core).getCacheResults();
+    }
+
+    /**
+     * @return the number of cycles from currentCycle on in which nothing can change, 0 if something might
+     */
+    private int getIdleCycles(long currentCycle) {
+        int idleCycles = Integer.MAX_VALUE;
+        for (int bank = 0; bank < buses.length && idleCycles > 0; bank++) {
+            idleCycles = Math.min(idleCycles, buses[bank].getIdleCycles(currentCycle));
+        }
+        for (int i = 0; i < numCores && idleCycles > 0; i++) {
+            idleCycles = Math.min(idleCycles, processors.elementAt(i).getIdleCycles(i));
+        }
+        // nothing will ever happen again, leave it to the normal loop
+        if (idleCycles == Integer.MAX_VALUE) {
+            return 0;
+        }
+        return idleCycles;
+    }
+
+    /**
+     * Print the results of the simulation (after runProcessors())
+     * @return the same results
+     */
+    public SimulationResult calculateResults() {
+        CacheResults total = new CacheResults();
+        for (int i = 0; i < numCores; i++) {
+            total.add(processors.elementAt(i).getCacheResults());
+        }
+        out.println("Total amount of data traffic (bytes):  " + total.traffic);
+        out.println("Total number of invalidations/updates: " + total.update);
+        out.println("Private data accesses(self): " + total.privateData);
+        out.println("Shared data accesses(self):  " + total.sharedData);
+        double averageLatency = total.getAverageLatency(getCacheToCacheCycles());
+        out.println("Average latency (number of clock cycles): " + averageLatency);
+        long snoopsDelivered = 0;
+        long snoopsFiltered = 0;
+        for (Bus bus : buses) {
+            snoopsDelivered += bus.snoopFilter.getSnoopsDelivered();
+            snoopsFiltered += bus.snoopFilter.getSnoopsFiltered();
+        }
+        out.println("Snoops delivered/filtered out: " + snoopsDelivered + "/" + snoopsFiltered);
+        if (protocol == Protocol.DIRECTORY) {
+            Directory[] directories = new Directory[buses.length];
+            for (int bank = 0; bank < buses.length; bank++) {
+                directories[bank] = buses[bank].directory;
+            }
+            Directory.printMessages(directories, out);
+        }
+        return new SimulationResult(protocol, cacheSize, associativity, blockSize, cycles, total.traffic, total.update,
+                total.privateData, total.sharedData, total.misses, averageLatency);
+    }
+
+    /**
+     * Print the busy and idle cycles of the bus (of every bank, if it has several, and of all of them together), the busy
+     * cycles by transaction, and the grants and waits of every core (see BusQueue)
+     */
+    public void printBusStats() {
+        long busyCycles = 0;
+        long idleCycles = 0;
+        long[] occupancy = new long[Transaction.values().length];
+        long[] grants = new long[numCores];
+        LatencyHistogram[] waitCycles = new LatencyHistogram[numCores];
+        for (int i = 0; i < numCores; i++) {
+            waitCycles[i] = new LatencyHistogram();
+        }
+        for (int bank = 0; bank < buses.length; bank++) {
+            Bus bus = buses[bank];
+            if (buses.length > 1) {
+                out.println(String.format("Bank %d busy/idle cycles: %d/%d (%.2f%% busy), %d operations", bank,
+                        bus.getBusyCycles(), bus.getIdleCycleCount(), 100.0 * bus.getBusyCycles()
+                                / Math.max(bus.getBusyCycles() + bus.getIdleCycleCount(), 1),
+                        getGrants(bus.getQueue())));
+            }
+            busyCycles += bus.getBusyCycles();
+            idleCycles += bus.getIdleCycleCount();
+            for (Transaction transaction : Transaction.values()) {
+                occupancy[transaction.ordinal()] += bus.getOccupancy(transaction);
+            }
+            for (int i = 0; i < numCores; i++) {
+                grants[i] += bus.getQueue().getGrants(i);
+                waitCycles[i].add(bus.getQueue().getWaitCycles(i));
+            }
+        }
+        out.println(String.format("Bus busy/idle cycles: %d/%d (%.2f%% busy)", busyCycles, idleCycles,
+                100.0 * busyCycles / Math.max(busyCycles + idleCycles, 1)));
+        for (Transaction transaction : Transaction.values()) {
+            long cycles = occupancy[transaction.ordinal()];
+            if (cycles > 0) {
+                out.println(String.format("  %-22s %12d (%.2f%% of busy cycles)", transaction, cycles,
+                        100.0 * cycles / busyCycles));
+            }
+        }
+        out.println("Bus arbitration: " + buses[0].getArbitration());
+        out.println(String.format("%-6s %12s %10s %8s %8s", "core", "grants", "mean wait", "p99", "max"));
+        LatencyHistogram total = new LatencyHistogram();
+        for (int i = 0; i < numCores; i++) {
+            out.println(String.format("%-6d %12d %10.2f %8d %8d", i, grants[i], waitCycles[i].getMean(),
+                    waitCycles[i].getValueAtPercentile(99), waitCycles[i].getMax()));
+            total.add(waitCycles[i]);
+        }
+        out.println(String.format("%-6s %12d %10.2f %8d %8d", "all", total.getCount(), total.getMean(),
+                total.getValueAtPercentile(99), total.getMax()));
+    }
+
+    private long getGrants(BusQueue queue) {
+        long grants = 0;
+        for (int i = 0; i < numCores; i++) {
+            grants += queue.getGrants(i);
+        }
+        return grants;
+    }
+
+    /**
+     * Write the bus samples (see setBusTimeSeries()) to a file, with a last one for the cycles since the one before
+     */
+    public void writeBusTimeSeries(String fileName) throws IOException {
+        if (currentCycle > busTimeSeries.getLastCycle()) {
+            sampleBus();
+        }
+        busTimeSeries.write(fileName);
+    }
+
+    /**
+     * Print the count, mean, p50, p99 and maximum of the stalls of every core, by the transaction it stalled on (see
+     * Processor.getStallCycles()), and of all cores together
+     */
+    public void printStallCycles() {
+        out.println(String.format("%-6s %-22s %12s %10s %8s %8s %8s", "core", "transaction", "stalls", "mean", "p50",
+                "p99", "max"));
+        for (Transaction transaction : Transaction.values()) {
+            LatencyHistogram total = new LatencyHistogram();
+            for (int i = 0; i < numCores; i++) {
+                LatencyHistogram histogram = processors.elementAt(i).getStallCycles(transaction);
+                if (histogram.getCount() > 0) {
+                    printStallCycles(Integer.toString(i), transaction, histogram);
+                    total.add(histogram);
+                }
+            }
+            if (total.getCount() > 0) {
+                printStallCycles("all", transaction, total);
+            }
+        }
+    }
+
+    private void printStallCycles(String core, Transaction transaction, LatencyHistogram histogram) {
+        out.println(String.format("%-6s %-22s %12d %10.2f %8d %8d %8d", core, transaction, histogram.getCount(),
+                histogram.getMean(), histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getMax()));
+    }
+
+    /**
+     * Write the non-empty buckets of the stall histograms of every core to a file, as JSON if its name ends in .json
+     * and as CSV (core,transaction,from,to,count) otherwise
+     */
+    public void writeStallCycles(String fileName) throws IOException {
+        boolean isJson = fileName.toLowerCase().endsWith(".json");
+        try (PrintStream file = new PrintStream(new BufferedOutputStream(new FileOutputStream(fileName)), false,
+                "UTF-8")) {
+            file.println(isJson ? "[" : "core,transaction,from,to,count");
+            boolean isFirst = true;
+            for (int i = 0; i < numCores; i++) {
+                for (Transaction transaction : Transaction.values()) {
+                    LatencyHistogram histogram = processors.elementAt(i).getStallCycles(transaction);
+                    if (histogram.getCount() == 0) {
+                        continue;
+                    }
+                    if (isJson) {
+                        file.print(isFirst ? "" : ",\n");
+                        file.print(String.format("  {\"core\": %d, \"transaction\": \"%s\", \"count\": %d, "
+                                + "\"mean\": %.4f, \"p50\": %d, \"p99\": %d, \"max\": %d, \"buckets\": [", i,
+                                transaction, histogram.getCount(), histogram.getMean(),
+                                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                                histogram.getMax()));
+                    }
+                    boolean isFirstBucket = true;
+                    for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+                        long count = histogram.getCountAt(bucket);
+                        if (count == 0) {
+                            continue;
+                        }
+                        if (isJson) {
+                            file.print(String.format("%s[%d, %d, %d]", isFirstBucket ? "" : ", ",
+                                    LatencyHistogram.getBucketFrom(bucket), LatencyHistogram.getBucketTo(bucket),
+                                    count));
+                        } else {
+                            file.println(i + "," + transaction + "," + LatencyHistogram.getBucketFrom(bucket) + ","
+                                    + LatencyHistogram.getBucketTo(bucket) + "," + count);
+                        }
+                        isFirstBucket = false;
+                    }
+                    if (isJson) {
+                        file.print("]}");
+                    }
+                    isFirst = false;
+                }
+            }
+            if (isJson) {
+                file.println();
+                file.println("]");
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package cachesim;
+
+/**
+ * The results of a single simulation (see Simulation.calculateResults()), along with the configuration it ran with.
+ */
+public class SimulationResult {
+
+    public final Protocol protocol;
+    public final int cacheSize;
+    public final int associativity;
+    public final int blockSize;
+
+    public final long cycles;
+    // amount of data traffic busread/buswrite/busupdate
+    public final long traffic;
+    // number of invalidations/updates
+    public final long update;
+    // distribution of private/shared data
+    public final long privateData;
+    public final long sharedData;
+    // read and write misses
+    public final long misses;
+    public final double averageLatency;
+
+    public SimulationResult(Protocol protocol, int cacheSize, int associativity, int blockSize, long cycles,
+                            long traffic, long update, long privateData, long sharedData, long misses,
+                            double averageLatency) {
+        this.protocol = protocol;
+        this.cacheSize = cacheSize;
+        this.associativity = associativity;
+        this.blockSize = blockSize;
+        this.cycles = cycles;
+        this.traffic = traffic;
+        this.update = update;
+        this.privateData = privateData;
+        this.sharedData = sharedData;
+        this.misses = misses;
+        this.averageLatency = averageLatency;
+    }
+}
@@ -0,0 +1,176 @@
+package cachesim;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Keeps track of which caches hold which blocks, so that a bus operation only has to be snooped by the caches that
+ * actually have the block (everyone else would just search the set and find nothing).
+ *
+ * A block is identified by its set index and tag (see Cache.getBlock()), and maps to a bit mask of the cores holding it,
+ * so at most 64 cores are supported. It is an open addressing hash table on primitive arrays, so updating it does not
+ * allocate unless it has to grow.
+ */
+public class SnoopFilter {
+
+    public static final int MAX_CORES = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // a slot is empty if its mask is 0
+    private long[] blocks;
+    private long[] sharers;
+    private int size;
+
+    private long snoopsDelivered;
+    private long snoopsFiltered;
+
+    public SnoopFilter(int cores) {
+        if (cores > MAX_CORES) {
+            throw new IllegalArgumentException("The snoop filter supports at most " + MAX_CORES + " cores.");
+        }
+        blocks = new long[INITIAL_CAPACITY];
+        sharers = new long[INITIAL_CAPACITY];
+        size = 0;
+        snoopsDelivered = 0;
+        snoopsFiltered = 0;
+    }
+
+    /**
+     * Record that the cache of `core` now holds `block`.
+     */
+    public void addSharer(long block, int core) {
+        int slot = findSlot(block);
+        if (sharers[slot] == 0) {
+            blocks[slot] = block;
+            size += 1;
+        }
+        sharers[slot] |= 1L << core;
+        if (size * 2 > blocks.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Record that the cache of `core` no longer holds `block`.
+     */
+    public void removeSharer(long block, int core) {
+        int slot = findSlot(block);
+        if (sharers[slot] == 0) {
+            return;
+        }
+        sharers[slot] &= ~(1L << core);
+        if (sharers[slot] == 0) {
+            size -= 1;
+            deleteSlot(slot);
+        }
+    }
+
+    /**
+     * @return a bit mask of the cores whose cache holds `block`
+     */
+    public long getSharers(long block) {
+        return sharers[findSlot(block)];
+    }
+
+    /**
+     * Find the caches a snoop of `block` has to be delivered to, and count the rest of the `cores` as filtered out.
+     * @return a bit mask of the cores whose cache holds the block
+     */
+    public long filterSnoop(long block, int cores) {
+        long mask = getSharers(block);
+        int delivered = Long.bitCount(mask);
+        snoopsDelivered += delivered;
+        snoopsFiltered += cores - delivered;
+        return mask;
+    }
+
+    public long getSnoopsDelivered() {
+        return snoopsDelivered;
+    }
+
+    public long getSnoopsFiltered() {
+        return snoopsFiltered;
+    }
+
+    /**
+     * Write the table exactly as it is, slot by slot (see Checkpoint)
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(blocks.length);
+        out.writeInt(size);
+        for (int slot = 0; slot < blocks.length; slot++) {
+            if (sharers[slot] != 0) {
+                out.writeInt(slot);
+                out.writeLong(blocks[slot]);
+                out.writeLong(sharers[slot]);
+            }
+        }
+        out.writeLong(snoopsDelivered);
+        out.writeLong(snoopsFiltered);
+    }
+
+    public void readState(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        size = in.readInt();
+        blocks = new long[capacity];
+        sharers = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            int slot = in.readInt();
+            blocks[slot] = in.readLong();
+            sharers[slot] = in.readLong();
+        }
+        snoopsDelivered = in.readLong();
+        snoopsFiltered = in.readLong();
+    }
+
+    /**
+     * @return the slot holding `block`, or the empty slot where it should go
+     */
+    private int findSlot(long block) {
+        int mask = blocks.length - 1;
+        int slot = hash(block) & mask;
+        while (sharers[slot] != 0 && blocks[slot] != block) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empty a slot, moving later entries of the same probe sequence back so that they can still be found.
+     */
+    private void deleteSlot(int slot) {
+        int mask = blocks.length - 1;
+        int next = (slot + 1) & mask;
+        while (sharers[next] != 0) {
+            int home = hash(blocks[next]) & mask;
+            // move the entry if its home slot is not in between the hole and where it currently is
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                blocks[slot] = blocks[next];
+                sharers[slot] = sharers[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        sharers[slot] = 0;
+    }
+
+    private void resize() {
+        long[] oldBlocks = blocks;
+        long[] oldSharers = sharers;
+        blocks = new long[oldBlocks.length * 2];
+        sharers = new long[oldSharers.length * 2];
+        for (int i = 0; i < oldBlocks.length; i++) {
+            if (oldSharers[i] != 0) {
+                int slot = findSlot(oldBlocks[i]);
+                blocks[slot] = oldBlocks[i];
+                sharers[slot] = oldSharers[i];
+            }
+        }
+    }
+
+    private static int hash(long block) {
+        long h = block * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,152 @@
+package cachesim;
+
+/**
+ * Miss rates of every cache size x associativity x block size in a grid, from a single pass over each core's trace,
+ * instead of a simulation per configuration.
+ *
+ * Coherence is ignored: every core has its own LRU cache that only its own loads and stores go through (a store that
+ * misses allocates the block, like a load). Configurations with the same blockSize * associativity and number of sets
+ * map addresses the same way in Cache (see StackDistance), so they share one StackDistance.
+ */
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class StackAnalysis {
+
+    private String trace;
+    private int numCores;
+    private List<Integer> cacheSizes;
+    private List<Integer> associativities;
+    private List<Integer> blockSizes;
+    private int maxAssociativity;
+
+    // one mapping per blockSize * associativity and number of sets, by "blockBytes/sets"
+    private List<String> mappings;
+    // the totals of every core, by mapping
+    private Hashtable<String, StackDistance> totals;
+
+    public StackAnalysis(String trace, int numCores, List<Integer> cacheSizes, List<Integer> associativities,
+                         List<Integer> blockSizes) {
+        this.trace = trace;
+        this.numCores = numCores;
+        this.cacheSizes = cacheSizes;
+        this.associativities = associativities;
+        this.blockSizes = blockSizes;
+
+        maxAssociativity = 1;
+        mappings = new ArrayList<>();
+        for (int cacheSize : cacheSizes) {
+            for (int associativity : associativities) {
+                maxAssociativity = Math.max(maxAssociativity, associativity);
+                for (int blockSize : blockSizes) {
+                    String mapping = getMapping(cacheSize, associativity, blockSize);
+                    if (mapping != null && !mappings.contains(mapping)) {
+                        mappings.add(mapping);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the trace of every core (several at a time) and add up their stack distances.
+     * @param threads the number of cores to read at once
+     */
+    public void run(int threads) throws IOException, InterruptedException {
+        List<Callable<List<StackDistance>>> cores = new ArrayList<>();
+        for (int core = 0; core < numCores; core++) {
+            int traceCore = core;
+            cores.add(() -> analyseCore(traceCore));
+        }
+
+        totals = new Hashtable<>();
+        for (String mapping : mappings) {
+            totals.put(mapping, newStackDistance(mapping));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<List<StackDistance>> result : pool.invokeAll(cores)) {
+                List<StackDistance> distances = result.get();
+                for (int i = 0; i < mappings.size(); i++) {
+                    totals.get(mappings.get(i)).add(distances.get(i));
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<StackDistance> analyseCore(int core) throws IOException {
+        StackDistance[] distances = new StackDistance[mappings.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = newStackDistance(mappings.get(i));
+        }
+        TraceSource source = Instruction.openTrace(trace, core);
+        while (source.readLine()) {
+            int type = source.getType();
+            if (type == 0 || type == 1) {
+                int address = source.getAddress();
+                for (StackDistance distance : distances) {
+                    distance.access(address);
+                }
+            }
+        }
+        source.close();
+        return Arrays.asList(distances);
+    }
+
+    /**
+     * Print the misses of every configuration in the grid (skipping ones where a set would not even hold one block),
+     * added up over all cores
+     */
+    public void printResults(PrintStream out) {
+        out.println(String.format("%10s %6s %6s %14s %14s %10s",
+                "cache_size", "assoc", "block", "accesses", "misses", "miss_rate"));
+        for (int cacheSize : cacheSizes) {
+            for (int associativity : associativities) {
+                for (int blockSize : blockSizes) {
+                    String mapping = getMapping(cacheSize, associativity, blockSize);
+                    if (mapping == null) {
+                        continue;
+                    }
+                    StackDistance distance = totals.get(mapping);
+                    long misses = distance.getMisses(associativity);
+                    out.println(String.format("%10d %6d %6d %14d %14d %10.6f", cacheSize, associativity, blockSize,
+                            distance.getAccesses(), misses, (double)misses / Math.max(distance.getAccesses(), 1)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the mapping of the configuration ("blockBytes/sets"), null if a set would not hold one block
+     */
+    private static String getMapping(int cacheSize, int associativity, int blockSize) {
+        if (cacheSize < blockSize * associativity) {
+            return null;
+        }
+        return (blockSize * associativity) + "/" + (cacheSize / (blockSize * associativity));
+    }
+
+    private StackDistance newStackDistance(String mapping) {
+        int split = mapping.indexOf('/');
+        int blockBytes = Integer.parseInt(mapping.substring(0, split));
+        int sets = Integer.parseInt(mapping.substring(split + 1));
+        return new StackDistance(Integer.numberOfTrailingZeros(blockBytes), sets, maxAssociativity);
+    }
+}
@@ -0,0 +1,272 @@
+package cachesim;
+
+/**
+ * Mattson's LRU stack distances for one way of mapping addresses to sets, computed in a single pass over a trace.
+ *
+ * The stack distance of an access is the number of other blocks of the same set that were used since the last access to
+ * its block. An LRU set with A ways hits exactly when the distance is below A, so one histogram of distances gives the
+ * misses of every associativity with this mapping at once.
+ *
+ * Cache maps an address to a set and tag as (address >>> offset bits) / associativity, so the block it keeps is really
+ * `address >>> log2(blockSize * associativity)` and there are cacheSize / (blockSize * associativity) sets. That is the
+ * mapping used here (`blockShift` and `sets`), so that the results match Cache with coherence ignored.
+ *
+ * For every block, the time of its last access is kept in a treap ordered by (set, time) with the size of each subtree,
+ * so counting the blocks of a set used after a given time, and moving a block to the top, take O(log n).
+ */
+
+import java.util.Arrays;
+
+public class StackDistance {
+
+    private static final int TIME_BITS = 40;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NONE = -1;
+
+    private int blockShift;
+    private int setMask;
+    private int maxDistance;
+
+    // histogram[d] is the number of accesses at distance d, the last one counts every distance of maxDistance or more
+    private long[] histogram;
+    private long coldMisses;
+    private long accesses;
+
+    // block -> treap node, open addressing (a slot is empty if its node is NONE)
+    private int[] slotBlocks;
+    private int[] slotNodes;
+
+    // the treap, one node per block seen
+    private long[] keys;         // set << TIME_BITS | time of the last access
+    private int[] left;
+    private int[] right;
+    private int[] sizes;
+    private int[] priorities;
+    private int nodes;
+    private int root;
+    private int random;
+    private int[] halves = new int[2];      // results of split()
+
+    /**
+     * @param blockShift log2 of the number of bytes that map to one block
+     * @param sets the number of sets, a power of two
+     * @param maxDistance distances of this or more are not told apart (they miss for every associativity asked for)
+     */
+    public StackDistance(int blockShift, int sets, int maxDistance) {
+        this.blockShift = blockShift;
+        this.setMask = sets - 1;
+        this.maxDistance = maxDistance;
+        histogram = new long[maxDistance + 1];
+        coldMisses = 0;
+        accesses = 0;
+
+        slotBlocks = new int[INITIAL_CAPACITY];
+        slotNodes = new int[INITIAL_CAPACITY];
+        Arrays.fill(slotNodes, NONE);
+        keys = new long[INITIAL_CAPACITY];
+        left = new int[INITIAL_CAPACITY];
+        right = new int[INITIAL_CAPACITY];
+        sizes = new int[INITIAL_CAPACITY];
+        priorities = new int[INITIAL_CAPACITY];
+        nodes = 0;
+        root = NONE;
+        random = 4223;
+    }
+
+    public void access(int address) {
+        int block = address >>> blockShift;
+        long set = block & setMask;
+        long key = set << TIME_BITS | accesses;
+        accesses += 1;
+
+        int slot = findSlot(block);
+        int node = slotNodes[slot];
+        if (node == NONE) {
+            coldMisses += 1;
+            node = newNode();
+            slotBlocks[slot] = block;
+            slotNodes[slot] = node;
+            if (nodes * 2 > slotBlocks.length) {
+                resizeSlots();
+            }
+        } else {
+            // blocks of the same set used since, i.e. with keys between the last access and the end of the set
+            long distance = countBelow((set + 1) << TIME_BITS) - countBelow(keys[node] + 1);
+            histogram[(int)Math.min(distance, maxDistance)] += 1;
+            root = remove(root, keys[node]);
+        }
+        keys[node] = key;
+        left[node] = NONE;
+        right[node] = NONE;
+        sizes[node] = 1;
+        root = insert(root, node);
+    }
+
+    /**
+     * @return the number of misses of an LRU cache with this mapping and `associativity` ways
+     */
+    public long getMisses(int associativity) {
+        long misses = coldMisses;
+        for (int distance = Math.min(associativity, maxDistance); distance <= maxDistance; distance++) {
+            misses += histogram[distance];
+        }
+        return misses;
+    }
+
+    public long getAccesses() {
+        return accesses;
+    }
+
+    /**
+     * Add the histogram of another trace with the same mapping (so the totals of every core can be reported together)
+     */
+    public void add(StackDistance other) {
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            histogram[distance] += other.histogram[distance];
+        }
+        coldMisses += other.coldMisses;
+        accesses += other.accesses;
+    }
+
+    /**
+     * @return the number of nodes with a key below `key`
+     */
+    private long countBelow(long key) {
+        long count = 0;
+        int node = root;
+        while (node != NONE) {
+            if (keys[node] < key) {
+                count += size(left[node]) + 1;
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return count;
+    }
+
+    private int insert(int tree, int node) {
+        if (tree == NONE) {
+            return node;
+        }
+        if (priorities[node] > priorities[tree]) {
+            // split the tree around the new key, and hang both halves under it
+            split(tree, keys[node]);
+            left[node] = halves[0];
+            right[node] = halves[1];
+            update(node);
+            return node;
+        }
+        if (keys[node] < keys[tree]) {
+            left[tree] = insert(left[tree], node);
+        } else {
+            right[tree] = insert(right[tree], node);
+        }
+        update(tree);
+        return tree;
+    }
+
+    private int remove(int tree, long key) {
+        if (keys[tree] == key) {
+            return merge(left[tree], right[tree]);
+        }
+        if (key < keys[tree]) {
+            left[tree] = remove(left[tree], key);
+        } else {
+            right[tree] = remove(right[tree], key);
+        }
+        update(tree);
+        return tree;
+    }
+
+    /**
+     * Split a tree into the nodes with keys below `key` (halves[0]) and the rest (halves[1])
+     */
+    private void split(int tree, long key) {
+        if (tree == NONE) {
+            halves[0] = NONE;
+            halves[1] = NONE;
+        } else if (keys[tree] < key) {
+            split(right[tree], key);
+            right[tree] = halves[0];
+            update(tree);
+            halves[0] = tree;
+        } else {
+            split(left[tree], key);
+            left[tree] = halves[1];
+            update(tree);
+            halves[1] = tree;
+        }
+    }
+
+    /**
+     * Merge two trees, where every key of `low` is below every key of `high`
+     */
+    private int merge(int low, int high) {
+        if (low == NONE) {
+            return high;
+        }
+        if (high == NONE) {
+            return low;
+        }
+        if (priorities[low] > priorities[high]) {
+            right[low] = merge(right[low], high);
+            update(low);
+            return low;
+        }
+        left[high] = merge(low, left[high]);
+        update(high);
+        return high;
+    }
+
+    private int size(int node) {
+        return node == NONE ? 0 : sizes[node];
+    }
+
+    private void update(int node) {
+        sizes[node] = size(left[node]) + size(right[node]) + 1;
+    }
+
+    private int newNode() {
+        if (nodes == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+        }
+        // xorshift, so that every run builds the same treap
+        random ^= random << 13;
+        random ^= random >>> 17;
+        random ^= random << 5;
+        priorities[nodes] = random;
+        nodes += 1;
+        return nodes - 1;
+    }
+
+    private int findSlot(int block) {
+        int mask = slotBlocks.length - 1;
+        int hash = block * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slotNodes[slot] != NONE && slotBlocks[slot] != block) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resizeSlots() {
+        int[] oldBlocks = slotBlocks;
+        int[] oldNodes = slotNodes;
+        slotBlocks = new int[oldBlocks.length * 2];
+        slotNodes = new int[oldBlocks.length * 2];
+        Arrays.fill(slotNodes, NONE);
+        for (int i = 0; i < oldBlocks.length; i++) {
+            if (oldNodes[i] != NONE) {
+                int slot = findSlot(oldBlocks[i]);
+                slotBlocks[slot] = oldBlocks[i];
+                slotNodes[slot] = oldNodes[i];
+            }
+        }
+    }
+}
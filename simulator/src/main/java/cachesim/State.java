@@ -1,3 +1,5 @@
+package cachesim;
+
 /**
  * Encode the current state of the cache.
  */
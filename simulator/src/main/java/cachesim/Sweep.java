@@ -0,0 +1,199 @@
+package cachesim;
+
+/**
+ * Runs a whole grid of simulations (protocol x cache size x associativity x block size) on the same trace, several at a
+ * time, and prints all of their results in one table.
+ */
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Sweep {
+
+    private List<Protocol> protocols;
+    private DecodedTrace trace;
+    private List<Integer> cacheSizes;
+    private List<Integer> associativities;
+    private List<Integer> blockSizes;
+    private boolean isEventDriven;
+    private int maxOutstanding;
+    private int banks;
+    private int directoryPointers;
+    private int messageLatency;
+
+    /**
+     * @param trace the trace that every simulation reads (through its own cursors)
+     */
+    public Sweep(List<Protocol> protocols, DecodedTrace trace, List<Integer> cacheSizes,
+                 List<Integer> associativities, List<Integer> blockSizes, boolean isEventDriven) {
+        this.protocols = protocols;
+        this.trace = trace;
+        this.cacheSizes = cacheSizes;
+        this.associativities = associativities;
+        this.blockSizes = blockSizes;
+        this.isEventDriven = isEventDriven;
+        maxOutstanding = 0;
+        banks = 1;
+        directoryPointers = 0;
+        messageLatency = Directory.DEFAULT_MESSAGE_LATENCY;
+    }
+
+    /**
+     * Run every simulation with a bus of several banks (see Simulation), configurations with fewer sets than banks are
+     * skipped
+     */
+    public void setBanks(int banks) {
+        this.banks = banks;
+    }
+
+    /**
+     * Run every simulation with a split transaction bus (see Bus.setSplitTransactions()), 0 for an atomic one
+     */
+    public void setSplitTransactions(int maxOutstanding) {
+        this.maxOutstanding = maxOutstanding;
+    }
+
+    /**
+     * Run the DIRECTORY simulations with this directory (see Simulation.setDirectory())
+     */
+    public void setDirectory(int pointers, int messageLatency) {
+        this.directoryPointers = pointers;
+        this.messageLatency = messageLatency;
+    }
+
+    /**
+     * Run every simulation in the grid, skipping configurations where a set would not even hold one block.
+     * Every simulation has its own bus, caches and trace cursors, so the results do not depend on the scheduling.
+     * @param threads the number of simulations to run at once
+     * @return the results, in the order of the grid (protocol, then cache size, then associativity, then block size)
+     */
+    public List<SimulationResult> run(int threads) throws IOException, InterruptedException {
+        List<Callable<SimulationResult>> simulations = new ArrayList<>();
+        for (Protocol protocol : protocols) {
+            for (int cacheSize : cacheSizes) {
+                for (int associativity : associativities) {
+                    for (int blockSize : blockSizes) {
+                        if (cacheSize < blockSize * associativity * banks) {
+                            continue;
+                        }
+                        simulations.add(() -> {
+                            Simulation simulation = new Simulation(protocol, new Instruction(trace), cacheSize,
+                                    associativity, blockSize, isEventDriven, banks, Simulation.QUIET);
+                            simulation.setSplitTransactions(maxOutstanding);
+                            simulation.setDirectory(directoryPointers, messageLatency);
+                            simulation.runProcessors();
+                            return simulation.calculateResults();
+                        });
+                    }
+                }
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<SimulationResult> results = new ArrayList<>();
+            for (Future<SimulationResult> result : pool.invokeAll(simulations)) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public static void printResults(List<SimulationResult> results, PrintStream out) {
+        out.println(String.format("%-9s %10s %6s %6s %12s %14s %10s %10s %10s %10s",
+                "protocol", "cache_size", "assoc", "block", "cycles", "traffic", "updates", "private", "shared",
+                "latency"));
+        for (SimulationResult result : results) {
+            out.println(String.format("%-9s %10d %6d %6d %12d %14d %10d %10d %10d %10.4f",
+                    result.protocol, result.cacheSize, result.associativity, result.blockSize, result.cycles,
+                    result.traffic, result.update, result.privateData, result.sharedData, result.averageLatency));
+        }
+    }
+
+    /**
+     * Print the cycles of the same grid run with an atomic and with a split transaction bus, how much faster the split
+     * one got through the trace, and the traffic and misses of both (which change too, as the accesses interleave
+     * differently)
+     */
+    public static void printComparison(List<SimulationResult> atomic, List<SimulationResult> split, PrintStream out) {
+        out.println(String.format("%-9s %10s %6s %6s %14s %14s %10s %14s %14s %12s %12s", "protocol", "cache_size",
+                "assoc", "block", "atomic_cycles", "split_cycles", "gain", "atomic_traffic", "split_traffic",
+                "atomic_miss", "split_miss"));
+        for (int i = 0; i < atomic.size(); i++) {
+            SimulationResult result = atomic.get(i);
+            SimulationResult splitResult = split.get(i);
+            out.println(String.format("%-9s %10d %6d %6d %14d %14d %9.2f%% %14d %14d %12d %12d", result.protocol,
+                    result.cacheSize, result.associativity, result.blockSize, result.cycles, splitResult.cycles,
+                    100.0 * ((double)result.cycles / splitResult.cycles - 1), result.traffic, splitResult.traffic,
+                    result.misses, splitResult.misses));
+        }
+    }
+
+    /**
+     * @param arg comma separated values, where each value is either a number or a range `from-to` of powers of two
+     *            (e.g. `1024-8192` is 1024,2048,4096,8192)
+     * @throws IllegalArgumentException if a value is below 1 or a range goes down
+     */
+    public static List<Integer> parseValues(String arg) {
+        List<Integer> values = new ArrayList<>();
+        for (String part : arg.split(",")) {
+            int split = part.indexOf('-');
+            if (split < 0) {
+                values.add(parseValue(part));
+            } else {
+                int from = parseValue(part.substring(0, split));
+                int to = parseValue(part.substring(split + 1));
+                if (from > to) {
+                    throw new IllegalArgumentException("The range " + part + " goes down.");
+                }
+                // stop before doubling past `to`, which could overflow
+                for (int value = from; ; value *= 2) {
+                    values.add(value);
+                    if (value > to / 2) {
+                        break;
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private static int parseValue(String arg) {
+        int value = Integer.parseInt(arg);
+        if (value < 1) {
+            throw new IllegalArgumentException("Every value has to be at least 1, not " + value + ".");
+        }
+        return value;
+    }
+
+    /**
+     * @param arg comma separated protocols, or `all`
+     */
+    public static List<Protocol> parseProtocols(String arg) {
+        List<Protocol> protocols = new ArrayList<>();
+        for (String part : arg.split(",")) {
+            if (part.equalsIgnoreCase("all")) {
+                for (Protocol protocol : Protocol.values()) {
+                    protocols.add(protocol);
+                }
+            } else {
+                protocols.add(Protocol.valueOf(part.toUpperCase()));
+            }
+        }
+        return protocols;
+    }
+}
@@ -0,0 +1,159 @@
+package cachesim;
+
+/**
+ * A single file holding the compressed traces of every core (`name.pack`), so a trace set can be archived and read as
+ * one file without unpacking it first.
+ *
+ * It starts with a header:
+ *   magic    4 bytes  "CTRP"
+ *   version  1 byte   1
+ *   cores    4 bytes  the number of cores
+ *   then for every core, the offset and length (8 bytes each) of its trace in the file
+ * followed by the trace of every core (text or binary) as a gzip stream of its own. Each core reads its own part of the
+ * file, so they can all be decompressed at the same time without ever holding a whole trace in memory.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class TracePack {
+
+    public static final byte[] MAGIC = {'C', 'T', 'R', 'P'};
+    public static final byte VERSION = 1;
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @param fileName the pack to write
+     * @param traces the trace file of every core in order, gzipped ones (.gz) are copied as they are
+     */
+    public static void write(String fileName, List<String> traces) throws IOException {
+        int headerSize = MAGIC.length + 1 + 4 + 16 * traces.size();
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.put(MAGIC);
+        header.put(VERSION);
+        header.putInt(traces.size());
+
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(headerSize);
+            // the channel must stay open after each core's gzip stream is finished
+            OutputStream out = Channels.newOutputStream(channel);
+            for (String trace : traces) {
+                long start = channel.position();
+                if (trace.endsWith(".gz")) {
+                    Files.copy(Paths.get(trace), out);
+                } else {
+                    GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+                    Files.copy(Paths.get(trace), gzip);
+                    gzip.finish();
+                }
+                out.flush();
+                header.putLong(start);
+                header.putLong(channel.position() - start);
+            }
+            header.flip();
+            channel.position(0);
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+    }
+
+    /**
+     * @return the number of cores in the pack
+     */
+    public static int countCores(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return readHeader(fileName, channel, MAGIC.length + 1 + 4).getInt(MAGIC.length + 1);
+        }
+    }
+
+    /**
+     * @return the decompressed trace of `core`, read from the pack as it is needed
+     */
+    public static InputStream open(String fileName, int core) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            int cores = readHeader(fileName, channel, MAGIC.length + 1 + 4).getInt(MAGIC.length + 1);
+            if (core >= cores) {
+                throw new IOException(fileName + " only has the traces of " + cores + " cores");
+            }
+            ByteBuffer entry = ByteBuffer.allocate(16);
+            channel.read(entry, MAGIC.length + 1 + 4 + 16L * core);
+            entry.flip();
+            return new GZIPInputStream(new Section(channel, entry.getLong(), entry.getLong()), BUFFER_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer readHeader(String fileName, FileChannel channel, int size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(size);
+        int read = 0;
+        // the header is at the start of the file, so the position in the buffer is the position in the file
+        while (header.hasRemaining() && read >= 0) {
+            read = channel.read(header, header.position());
+        }
+        header.flip();
+        if (header.remaining() < size || header.get(MAGIC.length) != VERSION) {
+            throw new IOException(fileName + " is not a trace pack (version " + VERSION + ")");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header.get(i) != MAGIC[i]) {
+                throw new IOException(fileName + " is not a trace pack (version " + VERSION + ")");
+            }
+        }
+        return header;
+    }
+
+    /**
+     * One core's part of the pack, read with positional reads so that it does not matter where anyone else is reading
+     */
+    private static class Section extends InputStream {
+
+        private FileChannel channel;
+        private long position;
+        private long end;
+
+        private Section(FileChannel channel, long start, long length) {
+            this.channel = channel;
+            position = start;
+            end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int)Math.min(len, end - position)), position);
+            if (read < 0) {
+                throw new IOException("Trace pack is truncated");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
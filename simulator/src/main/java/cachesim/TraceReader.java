@@ -0,0 +1,280 @@
+package cachesim;
+
+/**
+ * Reads the `type address` lines of a single .data trace straight out of a memory-mapped file (or out of a stream, such
+ * as a file that is being decompressed).
+ *
+ * Lines are parsed byte by byte from the MappedByteBuffer, so nothing (no Strings, no regex) is allocated per line.
+ * A MappedByteBuffer can only cover 2GB, so larger traces are mapped in windows that slide along the file as we read.
+ * A stream is read through a small buffer instead, and is never held in memory as a whole.
+ * Numbers follow the same rules as Integer.decode (0x/0X/# for hex, a leading 0 for octal, decimal otherwise).
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class TraceReader implements TraceSource {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private String fileName;
+    private FileChannel channel;
+    private long fileSize;
+    // only for traces that are read from a stream rather than mapped
+    private ReadableByteChannel stream;
+    private ByteBuffer window;
+    private long windowStart;
+    private long lineNumber;
+
+    // result of the last readLine()
+    private int type;
+    private int address;
+    // result of the last parseNumber()
+    private long parsed;
+
+    public TraceReader(String fileName) throws IOException {
+        this.fileName = fileName;
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        fileSize = channel.size();
+        lineNumber = 0;
+        map(0);
+    }
+
+    /**
+     * @param fileName the name of the trace, for error messages
+     * @param stream where to read the trace from, from its first byte on
+     */
+    public TraceReader(String fileName, ReadableByteChannel stream) {
+        this.fileName = fileName;
+        this.stream = stream;
+        fileSize = -1;
+        lineNumber = 0;
+        windowStart = 0;
+        window = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        window.flip();
+    }
+
+    /**
+     * Parse the next line of the trace.
+     * @return false if there are no more lines, otherwise the line can be read with getType() and getAddress()
+     */
+    @Override
+    public boolean readLine() {
+        int c = nextByte();
+        // skip blank lines and leading whitespace
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            if (c == '\n') {
+                lineNumber += 1;
+            }
+            c = nextByte();
+        }
+        if (c < 0) {
+            return false;
+        }
+        lineNumber += 1;
+
+        c = parseNumber(c);
+        type = (int)parsed;
+        while (c == ' ' || c == '\t') {
+            c = nextByte();
+        }
+        c = parseNumber(c);
+        address = (int)parsed;
+
+        // ignore anything else until the end of the line
+        while (c >= 0 && c != '\n') {
+            c = nextByte();
+        }
+        return true;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * @return an upper bound on the number of lines left in the trace (the number of line breaks, plus one), or -1 for
+     * a stream
+     */
+    @Override
+    public long countLines() {
+        if (stream != null) {
+            return -1;
+        }
+        long position = windowStart + window.position();
+        long lines = 1;
+        for (long start = position; start < fileSize; start += WINDOW_SIZE) {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            while (buffer.hasRemaining()) {
+                if (buffer.get() == '\n') {
+                    lines += 1;
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * @return the share of the file's bytes read so far, -1 for a stream (its size is not known)
+     */
+    @Override
+    public double getProgress() {
+        if (stream != null) {
+            return -1;
+        }
+        return fileSize == 0 ? 1 : (double)(windowStart + window.position()) / fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (stream != null) {
+            stream.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    /**
+     * @param c the first byte of the number
+     * @return the byte right after the number, the number itself is left in `parsed`
+     */
+    private int parseNumber(int c) {
+        boolean negative = false;
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            c = nextByte();
+        }
+        int radix = 10;
+        boolean hasDigits = false;
+        if (c == '#') {
+            radix = 16;
+            c = nextByte();
+        } else if (c == '0') {
+            hasDigits = true;
+            c = nextByte();
+            if (c == 'x' || c == 'X') {
+                radix = 16;
+                hasDigits = false;
+                c = nextByte();
+            } else {
+                radix = 8;
+            }
+        }
+
+        long value = 0;
+        while (true) {
+            int digit = digitValue(c, radix);
+            if (digit < 0) {
+                break;
+            }
+            value = value * radix + digit;
+            hasDigits = true;
+            c = nextByte();
+        }
+        if (!hasDigits || (c >= 0 && c != ' ' && c != '\t' && c != '\r' && c != '\n')) {
+            throw new UncheckedIOException(new IOException("Malformed trace line " + lineNumber + " in " + fileName));
+        }
+        parsed = negative ? -value : value;
+        return c;
+    }
+
+    private static int digitValue(int c, int radix) {
+        int digit;
+        if (c >= '0' && c <= '9') {
+            digit = c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            digit = c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            digit = c - 'A' + 10;
+        } else {
+            return -1;
+        }
+        return digit < radix ? digit : -1;
+    }
+
+    /**
+     * @return the offset of the next line and its line number, for the memory mapped file only
+     */
+    @Override
+    public long[] getPosition() {
+        if (stream != null) {
+            return null;
+        }
+        return new long[] {windowStart + window.position(), lineNumber};
+    }
+
+    @Override
+    public boolean seek(long[] position) throws IOException {
+        if (stream != null || position.length != 2) {
+            return false;
+        }
+        if (position[0] < 0 || position[0] > fileSize) {
+            throw new IOException(fileName + " is shorter than when the position was taken");
+        }
+        map(position[0]);
+        lineNumber = position[1];
+        return true;
+    }
+
+    /**
+     * @return the next byte in the file, or -1 at the end of the file. Slides the window along when it runs out.
+     */
+    private int nextByte() {
+        if (!window.hasRemaining()) {
+            if (stream != null) {
+                return refill();
+            }
+            long position = windowStart + window.limit();
+            if (position >= fileSize) {
+                return -1;
+            }
+            map(position);
+        }
+        return window.get() & 0xff;
+    }
+
+    /**
+     * @return the first byte read from the stream into the emptied buffer, or -1 at the end of the stream
+     */
+    private int refill() {
+        windowStart += window.limit();
+        window.clear();
+        try {
+            int read = 0;
+            while (read == 0) {
+                read = stream.read(window);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        window.flip();
+        return window.hasRemaining() ? window.get() & 0xff : -1;
+    }
+
+    private void map(long position) {
+        try {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
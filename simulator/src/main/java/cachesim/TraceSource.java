@@ -0,0 +1,72 @@
+package cachesim;
+
+/**
+ * Where a core gets the lines of its trace from, one `type address` line at a time.
+ */
+
+import java.io.IOException;
+
+public interface TraceSource {
+
+    /**
+     * Move on to the next line of the trace.
+     * @return false if there are no more lines, otherwise the line can be read with getType() and getAddress()
+     */
+    boolean readLine();
+
+    /**
+     * @return the type of the current line (LDR - 0, STR - 1, NOP - 2)
+     */
+    int getType();
+
+    /**
+     * @return the address of the current line (the number of NOPs for a NOP line)
+     */
+    int getAddress();
+
+    /**
+     * @return an upper bound on the number of lines left, or -1 if that is not known without reading them
+     */
+    default long countLines() {
+        return -1;
+    }
+
+    /**
+     * @return how much of the trace has been read so far, from 0 to 1 (by bytes, or by lines where the number of lines
+     * is known), or -1 if that is not known
+     */
+    default double getProgress() {
+        return -1;
+    }
+
+    /**
+     * Move on past a number of lines without looking at them (e.g. to go back to where a checkpoint was made)
+     * @return the number of lines skipped, less than `lines` if the trace ran out
+     */
+    default long skipLines(long lines) {
+        long skipped = 0;
+        while (skipped < lines && readLine()) {
+            skipped += 1;
+        }
+        return skipped;
+    }
+
+    /**
+     * @return where the next line is in the file, to seek() to with a new source of the same trace, or null if the trace
+     * cannot be read from the middle (it is compressed, or read ahead)
+     */
+    default long[] getPosition() {
+        return null;
+    }
+
+    /**
+     * Move on to a position from getPosition() without reading the lines before it, if this source can
+     * @return false if it cannot, and nothing was read
+     */
+    default boolean seek(long[] position) throws IOException {
+        return false;
+    }
+
+    default void close() throws IOException {
+    }
+}
@@ -1,3 +1,5 @@
+package cachesim;
+
 /**
  * Encode transactions.
  */
@@ -0,0 +1,62 @@
+package cachesim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Checks that a core's repeated requests for a block are merged while they wait under the arbitrations that grant a
+ * core one operation per turn, and kept under the others.
+ */
+public class BusQueueTest {
+
+    private static final int BLOCK_SHIFT = 4;
+    private static final BusQueue.Arbitration[] MERGING = {
+            BusQueue.Arbitration.ROUND_ROBIN, BusQueue.Arbitration.FIXED_PRIORITY};
+
+    @Test
+    public void mergesRequestsOfTheSameCoreForTheSameBlock() {
+        for (BusQueue.Arbitration arbitration : MERGING) {
+            BusQueue queue = new BusQueue(arbitration, 2);
+            BusOperation first = new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 0, 0x100);
+            queue.add(first, 0, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 0, 0x104), 1, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 0, 0x10c), 2, BLOCK_SHIFT);
+            assertEquals(arbitration.toString(), 1, queue.size());
+            assertSame(arbitration.toString(), first, queue.grant(3));
+            assertNull(arbitration.toString(), queue.grant(4));
+            assertEquals(arbitration.toString(), 3, queue.getWaitCycles(0).getTotal());
+        }
+    }
+
+    @Test
+    public void keepsRepeatedRequestsInOrder() {
+        for (BusQueue.Arbitration arbitration
+                : new BusQueue.Arbitration[] {BusQueue.Arbitration.FLUSH_FIRST, BusQueue.Arbitration.FCFS}) {
+            BusQueue queue = new BusQueue(arbitration, 2);
+            queue.add(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 0, 0x100), 0, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 0, 0x104), 1, BLOCK_SHIFT);
+            assertEquals(arbitration.toString(), 2, queue.size());
+        }
+    }
+
+    @Test
+    public void keepsEverythingElse() {
+        for (BusQueue.Arbitration arbitration : BusQueue.Arbitration.values()) {
+            BusQueue queue = new BusQueue(arbitration, 2);
+            queue.add(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 0, 0x100), 0, BLOCK_SHIFT);
+            // another core, another block, another transaction
+            queue.add(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 1, 0x100), 0, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_READ_EXCLUSIVE, 0, 0x110), 0, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_READ, 0, 0x100), 0, BLOCK_SHIFT);
+            // every write of DRAGON sends its own update, and every flush writes back a block
+            queue.add(new BusOperation(Transaction.BUS_UPDATE, 0, 0x200), 0, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_UPDATE, 0, 0x200), 0, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_FLUSH, 0, 0), 0, BLOCK_SHIFT);
+            queue.add(new BusOperation(Transaction.BUS_FLUSH, 0, 0), 0, BLOCK_SHIFT);
+            assertEquals(arbitration.toString(), 8, queue.size());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cachesim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Saves a checkpoint in the middle of a test trace and restores it into a new simulation, which has to finish with the
+ * same results as running the trace straight through.
+ */
+public class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void restoreMatchesStraightRun() throws IOException {
+        for (Protocol protocol : new Protocol[] {Protocol.MSI, Protocol.MESI, Protocol.DRAGON, Protocol.DIRECTORY}) {
+            for (String name : TestTraces.NAMES) {
+                assertRestoreMatches(protocol, name, 1, 0);
+                assertRestoreMatches(protocol, name, 2, Bus.DEFAULT_OUTSTANDING);
+            }
+        }
+    }
+
+    private void assertRestoreMatches(Protocol protocol, String name, int banks, int maxOutstanding)
+            throws IOException {
+        TestTraces.Run straight = TestTraces.run(protocol, name, 4096, 1, 16, true, banks, maxOutstanding);
+        String file = new File(folder.getRoot(), protocol + "_" + name + ".ckpt").getPath();
+
+        Simulation saving = TestTraces.create(protocol, name, 4096, 1, 16, true, banks, Simulation.QUIET);
+        if (maxOutstanding > 0) {
+            saving.setSplitTransactions(maxOutstanding);
+        }
+        saving.runProcessors(file, straight.result.cycles / 2, 0);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, "UTF-8");
+        Simulation restored = TestTraces.create(protocol, name, 4096, 1, 16, true, banks, out);
+        if (maxOutstanding > 0) {
+            restored.setSplitTransactions(maxOutstanding);
+        }
+        // the cores are printed when the simulation is created, which happened before the checkpoint for the straight run
+        bytes.reset();
+        restored.restoreCheckpoint(file);
+        restored.runProcessors();
+        SimulationResult result = restored.calculateResults();
+
+        // the cores that finished before the checkpoint are printed again when it is restored, so the output is the
+        // straight run's from the first core that finished on
+        int firstFinished = straight.output.indexOf(" has no more instructions");
+        String output = straight.output.substring(straight.output.lastIndexOf('\n', firstFinished) + 1);
+        TestTraces.assertSameResults(protocol + " " + name + " banks " + banks + " outstanding " + maxOutstanding,
+                new TestTraces.Run(straight.simulation, straight.result, output),
+                new TestTraces.Run(restored, result, TestTraces.toString(bytes)));
+    }
+}
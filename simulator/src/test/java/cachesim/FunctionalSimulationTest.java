@@ -0,0 +1,65 @@
+package cachesim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+/**
+ * Runs the test traces in the functional model, split over one and over several shards, which have to give the same
+ * results and take the same number of steps.
+ */
+public class FunctionalSimulationTest {
+
+    @Test
+    public void shardsMatchOneShard() throws IOException, InterruptedException {
+        for (Protocol protocol : new Protocol[] {Protocol.MSI, Protocol.MESI, Protocol.DRAGON, Protocol.DIRECTORY}) {
+            for (String name : TestTraces.NAMES) {
+                assertEquals(protocol + " " + name, run(protocol, name, 1), run(protocol, name, 4));
+            }
+        }
+    }
+
+    @Test
+    public void countsStepsUntilTheLastCoreEnds() throws IOException, InterruptedException {
+        for (String name : TestTraces.NAMES) {
+            // every instruction takes a step, and a run of n NOPs takes another n
+            long steps = 0;
+            for (int core = 0; core < TestTraces.CORES; core++) {
+                long coreSteps = 0;
+                for (String line : Files.readAllLines(Paths.get(TestTraces.getPath(name) + "_" + core + ".data"))) {
+                    String[] fields = line.trim().split("\\s+");
+                    coreSteps += 1 + (fields[0].equals("2") ? Long.decode(fields[1]) : 0);
+                }
+                steps = Math.max(steps, coreSteps);
+            }
+            for (int shards : new int[] {1, 3}) {
+                String output = print(Protocol.MESI, name, shards);
+                assertTrue(name + " " + shards + " shards: " + output,
+                        output.contains("Functional steps: " + steps + " (" + shards + " shards)"));
+            }
+        }
+    }
+
+    /**
+     * @return what the simulation printed, without the line that says how many shards it had
+     */
+    private static String run(Protocol protocol, String name, int shards) throws IOException, InterruptedException {
+        return print(protocol, name, shards).replaceAll("Functional steps: .*\\R", "");
+    }
+
+    private static String print(Protocol protocol, String name, int shards) throws IOException, InterruptedException {
+        Instruction instructions = new Instruction(TestTraces.getPath(name), TestTraces.CORES);
+        FunctionalSimulation simulation = new FunctionalSimulation(protocol, instructions, 4096, 1, 16, shards);
+        simulation.run();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        simulation.printResults(new PrintStream(bytes, true, "UTF-8"));
+        return TestTraces.toString(bytes);
+    }
+}
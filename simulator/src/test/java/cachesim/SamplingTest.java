@@ -0,0 +1,42 @@
+package cachesim;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Runs a real trace sampled and in full, where the full results have to be inside the confidence intervals of the
+ * estimates. The trace has parts where the processors stall a lot and parts with nothing but NOPs, so windows that are
+ * not spread evenly over its instructions, or that are not weighed by them, miss.
+ */
+public class SamplingTest {
+
+    @Test
+    public void estimatesCoverFullRun() throws IOException {
+        for (Protocol protocol : new Protocol[] {Protocol.MSI, Protocol.MESI, Protocol.DRAGON, Protocol.DIRECTORY}) {
+            SimulationResult full = TestTraces.run(protocol, TestTraces.BODYTRACK, 4096, 2, 16, true, 1, 0).result;
+
+            Simulation simulation = TestTraces.create(protocol, TestTraces.BODYTRACK, 4096, 2, 16, true, 1,
+                    Simulation.QUIET);
+            Sampling sampling = new Sampling(20000, 2000, 8000);
+            simulation.runSampled(sampling);
+
+            assertCovers(protocol + " cycles", full.cycles, sampling.estimate(Sampling.CYCLES));
+            assertCovers(protocol + " traffic", full.traffic, sampling.estimate(Sampling.TRAFFIC));
+            assertCovers(protocol + " updates", full.update, sampling.estimate(Sampling.UPDATE));
+            assertCovers(protocol + " private data", full.privateData, sampling.estimate(Sampling.PRIVATE));
+            assertCovers(protocol + " shared data", full.sharedData, sampling.estimate(Sampling.SHARED));
+            assertCovers(protocol + " latency", full.averageLatency,
+                    sampling.estimateLatency(simulation.getCacheToCacheCycles()));
+        }
+    }
+
+    private static void assertCovers(String message, double expected, double[] estimate) {
+        assertNotNull(message, estimate);
+        assertTrue(message + ": " + expected + " is not in " + estimate[0] + " +/- " + estimate[1],
+                Math.abs(expected - estimate[0]) <= estimate[1]);
+    }
+}
@@ -0,0 +1,79 @@
+package cachesim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Runs the test traces event-driven and cycle by cycle, which have to give exactly the same results, and checks the
+ * results of the default configuration against known ones, so that a change to the results is noticed.
+ */
+public class SimulationTest {
+
+    private static final Protocol[] PROTOCOLS = {Protocol.MSI, Protocol.MESI, Protocol.DRAGON, Protocol.DIRECTORY};
+
+    @Test
+    public void eventDrivenMatchesCycleByCycle() throws IOException {
+        for (Protocol protocol : PROTOCOLS) {
+            for (String name : TestTraces.NAMES) {
+                assertSameBothWays(protocol, name, 4096, 1, 16, 1, 0);
+                assertSameBothWays(protocol, name, 1024, 2, 16, 1, 0);
+            }
+        }
+    }
+
+    @Test
+    public void eventDrivenMatchesCycleByCycleWithBanks() throws IOException {
+        for (Protocol protocol : PROTOCOLS) {
+            for (String name : TestTraces.NAMES) {
+                assertSameBothWays(protocol, name, 4096, 1, 16, 4, 0);
+            }
+        }
+    }
+
+    @Test
+    public void eventDrivenMatchesCycleByCycleWithSplitBus() throws IOException {
+        for (Protocol protocol : PROTOCOLS) {
+            for (String name : TestTraces.NAMES) {
+                assertSameBothWays(protocol, name, 4096, 1, 16, 1, Bus.DEFAULT_OUTSTANDING);
+                assertSameBothWays(protocol, name, 4096, 1, 16, 2, 2);
+            }
+        }
+    }
+
+    @Test
+    public void knownResults() throws IOException {
+        // cycles, traffic, updates, private and shared data accesses of the trace named after each protocol
+        assertResults(Protocol.MSI, "testmsi", 913, 32, 2, 3, 1);
+        assertResults(Protocol.MESI, "testmesi", 834, 96, 3, 3, 3);
+        assertResults(Protocol.DRAGON, "testdragon", 446, 20, 5, 5, 4);
+    }
+
+    @Test
+    public void knownResultsOfBodytrack() throws IOException {
+        // the queue and its arbitration must not change what the protocols do
+        assertResults(Protocol.MSI, TestTraces.BODYTRACK, 20930322, 285104, 21746, 41156, 42529);
+    }
+
+    private static void assertSameBothWays(Protocol protocol, String name, int cacheSize, int associativity,
+                                           int blockSize, int banks, int maxOutstanding) throws IOException {
+        TestTraces.Run eventDriven = TestTraces.run(protocol, name, cacheSize, associativity, blockSize, true, banks,
+                maxOutstanding);
+        TestTraces.Run cycleByCycle = TestTraces.run(protocol, name, cacheSize, associativity, blockSize, false, banks,
+                maxOutstanding);
+        TestTraces.assertSameResults(protocol + " " + name + " " + cacheSize + "/" + associativity + "/" + blockSize
+                + " banks " + banks + " outstanding " + maxOutstanding, cycleByCycle, eventDriven);
+    }
+
+    private static void assertResults(Protocol protocol, String name, long cycles, long traffic, long update,
+                                      long privateData, long sharedData) throws IOException {
+        SimulationResult result = TestTraces.run(protocol, name, 4096, 1, 16, true, 1, 0).result;
+        assertEquals(protocol + " cycles", cycles, result.cycles);
+        assertEquals(protocol + " traffic", traffic, result.traffic);
+        assertEquals(protocol + " updates", update, result.update);
+        assertEquals(protocol + " private data", privateData, result.privateData);
+        assertEquals(protocol + " shared data", sharedData, result.sharedData);
+    }
+}
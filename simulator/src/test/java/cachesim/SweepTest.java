@@ -0,0 +1,103 @@
+package cachesim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks how the values of a sweep are parsed, and that its rows are what each configuration gives when run on its own,
+ * however many threads run them.
+ */
+public class SweepTest {
+
+    private static final List<Integer> CACHE_SIZES = Arrays.asList(1024, 4096);
+    private static final List<Integer> ASSOCIATIVITIES = Arrays.asList(1, 2);
+    private static final List<Integer> BLOCK_SIZES = Arrays.asList(16, 64);
+
+    @Test
+    public void rowsMatchStandaloneRuns() throws IOException, InterruptedException {
+        for (String name : TestTraces.NAMES) {
+            DecodedTrace trace = new DecodedTrace(TestTraces.getPath(name), TestTraces.CORES, DecodedTrace.Storage.HEAP);
+            List<SimulationResult> results = new Sweep(Sweep.parseProtocols("all"), trace, CACHE_SIZES,
+                    ASSOCIATIVITIES, BLOCK_SIZES, true).run(4);
+
+            int row = 0;
+            for (Protocol protocol : Protocol.values()) {
+                for (int cacheSize : CACHE_SIZES) {
+                    for (int associativity : ASSOCIATIVITIES) {
+                        for (int blockSize : BLOCK_SIZES) {
+                            String message = name + " " + protocol + " " + cacheSize + "/" + associativity + "/"
+                                    + blockSize;
+                            SimulationResult expected = TestTraces.run(protocol, name, cacheSize, associativity,
+                                    blockSize, true, 1, 0).result;
+                            assertSameRow(message, expected, results.get(row));
+                            row += 1;
+                        }
+                    }
+                }
+            }
+            assertEquals(name + ": rows", row, results.size());
+        }
+    }
+
+    @Test
+    public void tableDoesNotDependOnThreads() throws IOException, InterruptedException {
+        DecodedTrace trace = new DecodedTrace(TestTraces.getPath(TestTraces.BODYTRACK), TestTraces.CORES,
+                DecodedTrace.Storage.HEAP);
+        Sweep sweep = new Sweep(Sweep.parseProtocols("all"), trace, Arrays.asList(4096), ASSOCIATIVITIES,
+                Arrays.asList(16), true);
+        sweep.setBanks(2);
+        sweep.setSplitTransactions(Bus.DEFAULT_OUTSTANDING);
+        assertEquals(print(sweep.run(1)), print(sweep.run(4)));
+    }
+
+    @Test
+    public void parsesValuesAndRanges() {
+        assertEquals(Arrays.asList(1024, 2048, 4096, 8192), Sweep.parseValues("1024-8192"));
+        assertEquals(Arrays.asList(1, 2, 4, 16), Sweep.parseValues("1-4,16"));
+        assertEquals(Arrays.asList(8), Sweep.parseValues("8-8"));
+        // the last value below `to`, without overflowing
+        assertEquals(31, Sweep.parseValues("1-" + Integer.MAX_VALUE).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRangeFromZero() {
+        Sweep.parseValues("0-4");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsValueBelowOne() {
+        Sweep.parseValues("16,0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRangeGoingDown() {
+        Sweep.parseValues("8192-1024");
+    }
+
+    private static void assertSameRow(String message, SimulationResult expected, SimulationResult actual) {
+        assertEquals(message + ": protocol", expected.protocol, actual.protocol);
+        assertEquals(message + ": cache size", expected.cacheSize, actual.cacheSize);
+        assertEquals(message + ": associativity", expected.associativity, actual.associativity);
+        assertEquals(message + ": block size", expected.blockSize, actual.blockSize);
+        assertEquals(message + ": cycles", expected.cycles, actual.cycles);
+        assertEquals(message + ": traffic", expected.traffic, actual.traffic);
+        assertEquals(message + ": updates", expected.update, actual.update);
+        assertEquals(message + ": private data", expected.privateData, actual.privateData);
+        assertEquals(message + ": shared data", expected.sharedData, actual.sharedData);
+        assertEquals(message + ": misses", expected.misses, actual.misses);
+        assertEquals(message + ": latency", expected.averageLatency, actual.averageLatency, 0);
+    }
+
+    private static String print(List<SimulationResult> results) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Sweep.printResults(results, new PrintStream(bytes, true, "UTF-8"));
+        return TestTraces.toString(bytes);
+    }
+}
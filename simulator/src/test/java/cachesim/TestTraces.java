@@ -0,0 +1,118 @@
+package cachesim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Runs the test traces that come with the simulator (testmsi, testmesi and testdragon, 4 cores each) for the tests.
+ * They are looked for in the directory given by the traces.dir property, by default the one above the simulator module
+ * (which is where Maven runs the tests from).
+ *
+ * BODYTRACK is the bodytrack_2.data that comes with them split into 4 cores, a real trace for the results that the
+ * tiny test traces do not show. It is written to target/test-traces (the simulator lowercases the whole path of a
+ * trace, so it has to be one without capitals).
+ */
+class TestTraces {
+
+    static final String[] NAMES = {"testmsi", "testmesi", "testdragon"};
+    static final String BODYTRACK = "bodytrack";
+    static final int CORES = 4;
+
+    static String getPath(String name) throws IOException {
+        if (name.equals(BODYTRACK)) {
+            return splitBodytrack();
+        }
+        String directory = System.getProperty("traces.dir", "..");
+        return directory + "/" + name;
+    }
+
+    private static synchronized String splitBodytrack() throws IOException {
+        Path directory = Paths.get("target", "test-traces");
+        Path last = directory.resolve(BODYTRACK + "_" + (CORES - 1) + ".data");
+        if (!Files.isRegularFile(last)) {
+            List<String> lines = Files.readAllLines(Paths.get(getPath("bodytrack_2.data")));
+            Files.createDirectories(directory);
+            int perCore = lines.size() / CORES;
+            for (int core = 0; core < CORES; core++) {
+                Files.write(directory.resolve(BODYTRACK + "_" + core + ".data"),
+                        lines.subList(core * perCore, (core + 1) * perCore));
+            }
+        }
+        return directory.resolve(BODYTRACK).toString();
+    }
+
+    /**
+     * A finished timed simulation and everything it printed
+     */
+    static class Run {
+        final Simulation simulation;
+        final SimulationResult result;
+        final String output;
+
+        Run(Simulation simulation, SimulationResult result, String output) {
+            this.simulation = simulation;
+            this.result = result;
+            this.output = output;
+        }
+    }
+
+    static Simulation create(Protocol protocol, String name, int cacheSize, int associativity, int blockSize,
+                             boolean isEventDriven, int banks, PrintStream out) throws IOException {
+        Instruction instructions = new Instruction(getPath(name), CORES);
+        return new Simulation(protocol, instructions, cacheSize, associativity, blockSize, isEventDriven, banks, out);
+    }
+
+    /**
+     * Run a whole trace
+     * @param maxOutstanding the split bus transactions outstanding per bank, 0 for an atomic bus
+     */
+    static Run run(Protocol protocol, String name, int cacheSize, int associativity, int blockSize,
+                   boolean isEventDriven, int banks, int maxOutstanding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, "UTF-8");
+        Simulation simulation = create(protocol, name, cacheSize, associativity, blockSize, isEventDriven, banks, out);
+        if (maxOutstanding > 0) {
+            simulation.setSplitTransactions(maxOutstanding);
+        }
+        simulation.runProcessors();
+        SimulationResult result = simulation.calculateResults();
+        return new Run(simulation, result, toString(bytes));
+    }
+
+    static String toString(ByteArrayOutputStream bytes) throws UnsupportedEncodingException {
+        return bytes.toString("UTF-8");
+    }
+
+    static void assertSameResults(String message, Run expected, Run actual) {
+        assertEquals(message + ": cycles", expected.result.cycles, actual.result.cycles);
+        assertEquals(message + ": traffic", expected.result.traffic, actual.result.traffic);
+        assertEquals(message + ": updates", expected.result.update, actual.result.update);
+        assertEquals(message + ": private data", expected.result.privateData, actual.result.privateData);
+        assertEquals(message + ": shared data", expected.result.sharedData, actual.result.sharedData);
+        assertEquals(message + ": misses", expected.result.misses, actual.result.misses);
+        for (int core = 0; core < CORES; core++) {
+            assertSameResults(message + ": core " + core, expected.simulation.getCacheResults(core),
+                    actual.simulation.getCacheResults(core));
+        }
+        assertEquals(message + ": output", expected.output, actual.output);
+    }
+
+    static void assertSameResults(String message, CacheResults expected, CacheResults actual) {
+        assertEquals(message + " traffic", expected.traffic, actual.traffic);
+        assertEquals(message + " updates", expected.update, actual.update);
+        assertEquals(message + " private data", expected.privateData, actual.privateData);
+        assertEquals(message + " shared data", expected.sharedData, actual.sharedData);
+        assertEquals(message + " misses", expected.misses, actual.misses);
+        assertEquals(message + " hits in itself", expected.hitSelf, actual.hitSelf);
+        assertEquals(message + " hits in other caches", expected.hitOther, actual.hitOther);
+        assertEquals(message + " hits in memory", expected.hitMemory, actual.hitMemory);
+    }
+}
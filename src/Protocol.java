@@ -1,8 +0,0 @@
-/**
- * Encode which protocol we are using.
- */
-public enum Protocol {
-    MSI,
-    MESI,
-    DRAGON;
-}